@@ -0,0 +1,58 @@
+package com.calculator.benchmarks;
+
+import java.util.Random;
+
+// 基准测试用的表达式生成，固定随机种子保证每次运行输入相同
+final class Expressions {
+    private static final String[] OPERATORS = {"+", "-", "*", "/"};
+    private static final String[] FUNCTIONS = {"sin", "cos", "atan", "sqrt", "abs", "ln"};
+
+    private Expressions() {
+    }
+
+    static String generate(String shape, int size) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        switch (shape) {
+            case "sum":
+                sb.append(1 + random.nextInt(9));
+                for (int i = 1; i < size; i++) {
+                    sb.append(OPERATORS[random.nextInt(OPERATORS.length)]).append(1 + random.nextInt(9));
+                }
+                return sb.toString();
+            case "functions":
+                // 参数保持为正，使 sqrt/ln 在任意嵌套下都有定义
+                for (int i = 0; i < size; i++) {
+                    sb.append(FUNCTIONS[random.nextInt(FUNCTIONS.length)]).append("(abs(");
+                }
+                sb.append("2");
+                for (int i = 0; i < size; i++) {
+                    sb.append(")+1)");
+                }
+                return sb.toString();
+            case "powers":
+                sb.append("1.0001");
+                for (int i = 1; i < size; i++) {
+                    sb.append("^1.0001");
+                }
+                return sb.toString();
+            case "parens":
+                for (int i = 1; i < size; i++) {
+                    sb.append('(');
+                }
+                sb.append(1 + random.nextInt(9));
+                for (int i = 1; i < size; i++) {
+                    sb.append(OPERATORS[random.nextInt(3)]).append(1 + random.nextInt(9)).append(')');
+                }
+                return sb.toString();
+            default:
+                throw new IllegalArgumentException("未知的表达式形状: " + shape);
+        }
+    }
+
+    // 历史记录用的小表达式，按编号循环变化
+    static String small(int i) {
+        return (i % 97) + OPERATORS[i % OPERATORS.length] + (1 + i % 13) + "*" + FUNCTIONS[i % FUNCTIONS.length]
+                + "(" + (1 + i % 7) + ")";
+    }
+}
@@ -0,0 +1,93 @@
+package com.calculator.benchmarks;
+
+import com.calculator.model.ExpressionParser;
+import com.calculator.model.HistoryManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// 大文件：表达式文件批量求值、历史导入与导出，每次调用处理整个文件
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileBenchmark {
+    @Param({"1000000"})
+    public int lines;
+
+    @Param({"txt", "csv"})
+    public String format;
+
+    private Path directory;
+    private Path expressionFile;
+    private Path exportFile;
+    private HistoryManager source;
+    private HistoryManager target;
+    private ExpressionParser parser;
+
+    @Setup(Level.Trial)
+    public void setUpFiles() throws IOException {
+        directory = Files.createTempDirectory("calc-bench");
+        expressionFile = directory.resolve("expressions.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(expressionFile)) {
+            for (int i = 0; i < lines; i++) {
+                writer.write(Expressions.small(i));
+                writer.newLine();
+            }
+        }
+
+        source = new HistoryManager(directory.resolve("source.txt").toString(), 4096, 0);
+        parser = new ExpressionParser();
+        source.processExpressionFile(expressionFile.toString(), parser);
+        source.flush();
+
+        exportFile = directory.resolve("export." + format);
+        source.exportHistory(exportFile.toString(), format);
+    }
+
+    // 每次调用使用一个空的历史文件，避免导入和求值在上一次的结果上累积
+    @Setup(Level.Invocation)
+    public void setUpTarget() throws IOException {
+        Path file = directory.resolve("target.txt");
+        Files.deleteIfExists(file);
+        target = new HistoryManager(file.toString(), 4096, 0);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownTarget() {
+        target.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownFiles() throws IOException {
+        source.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Object processExpressionFile() throws IOException {
+        return target.processExpressionFile(expressionFile.toString(), parser);
+    }
+
+    @Benchmark
+    public void importHistory() throws IOException {
+        target.importHistory(exportFile.toString());
+    }
+
+    @Benchmark
+    public void exportHistory() throws IOException {
+        source.exportHistory(directory.resolve("out." + format).toString(), format);
+    }
+}
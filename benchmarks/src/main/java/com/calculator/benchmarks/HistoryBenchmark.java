@@ -0,0 +1,70 @@
+package com.calculator.benchmarks;
+
+import com.calculator.model.HistoryManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 历史记录：保存吞吐（含并发）、过滤查询和统计汇总，查询在预先填充的历史上进行
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+    @Param({"100000"})
+    public int entries;
+
+    private Path directory;
+    private HistoryManager history;
+    private int counter;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("calc-bench");
+        history = new HistoryManager(directory.resolve("history.txt").toString(), 1024, 100);
+        for (int i = 0; i < entries; i++) {
+            history.saveHistory(Expressions.small(i), i);
+        }
+        history.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        history.close();
+        Files.deleteIfExists(directory.resolve("history.txt"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void saveHistory() {
+        history.saveHistory("1+2*sin(3)", counter++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void saveHistoryConcurrent() {
+        history.saveHistory("1+2*sin(3)", 3.0);
+    }
+
+    @Benchmark
+    public String getHistoryFiltered() {
+        return history.getHistory(100, "sqrt", false);
+    }
+
+    @Benchmark
+    public String getHistoryRecent() {
+        return history.getHistory(10, null, true);
+    }
+
+    @Benchmark
+    public Map<String, Object> getHistoryStats() {
+        return history.getHistoryStats();
+    }
+}
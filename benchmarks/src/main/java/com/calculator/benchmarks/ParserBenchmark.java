@@ -0,0 +1,59 @@
+package com.calculator.benchmarks;
+
+import com.calculator.model.CompiledExpression;
+import com.calculator.model.ExpressionParser;
+import com.calculator.model.ResultCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// 表达式求值：按表达式形状和规模测量解析+求值、仅求值（预编译）以及结果缓存命中
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    // sum: 1+2*3-4/5...；functions: sin(cos(sqrt(...)))；powers: 1.0001^1.0001^...；parens: ((((1+2)*3)-4)...)
+    @Param({"sum", "functions", "powers", "parens"})
+    public String shape;
+
+    // 运算数个数或嵌套深度
+    @Param({"8", "64", "512"})
+    public int size;
+
+    private ExpressionParser parser;
+    private ExpressionParser cachedParser;
+    private CompiledExpression compiled;
+    private String expression;
+
+    @Setup
+    public void setUp() {
+        expression = Expressions.generate(shape, size);
+        parser = new ExpressionParser();
+        cachedParser = new ExpressionParser(new ResultCache(1024));
+        compiled = parser.compile(expression);
+        cachedParser.evaluate(expression);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return parser.evaluate(expression);
+    }
+
+    @Benchmark
+    public double evaluateCompiled() {
+        return compiled.evaluate();
+    }
+
+    @Benchmark
+    public double evaluateCached() {
+        return cachedParser.evaluate(expression);
+    }
+
+    @Benchmark
+    public CompiledExpression compile() {
+        return parser.compile(expression);
+    }
+}
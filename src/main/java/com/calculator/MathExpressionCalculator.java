@@ -1,19 +1,35 @@
 package com.calculator;
 
+import com.calculator.cli.HeadlessCalculator;
 import com.calculator.controller.CalculatorController;
+import com.calculator.metrics.Metrics;
+import com.calculator.metrics.MetricsRegistry;
 import com.calculator.model.ExpressionParser;
 import com.calculator.model.HistoryManager;
+import com.calculator.model.ResultCache;
 import com.calculator.view.CalculatorGUI;
 
 public class MathExpressionCalculator {
     public static void main(String[] args) {
+        // 带参数时以无界面模式运行，GUI 相关的类不会被加载
+        if (HeadlessCalculator.isRequested(args)) {
+            HeadlessCalculator.main(args);
+            return;
+        }
+        startGui();
+    }
+
+    private static void startGui() {
         javax.swing.SwingUtilities.invokeLater(() -> {
             // 创建视图
             CalculatorGUI view = new CalculatorGUI();
 
-            // 创建模型
-            ExpressionParser parser = new ExpressionParser();
-            HistoryManager historyManager = new HistoryManager("calculator_history.txt");
+            // 创建模型，-Dcalculator.metrics=true 时开启度量
+            Metrics metrics = MetricsRegistry.fromSystemProperties();
+            ExpressionParser parser = new ExpressionParser(new ResultCache(1024), metrics);
+            HistoryManager historyManager = new HistoryManager("calculator_history.txt", 1, 0,
+                    HistoryManager.DEFAULT_MAX_PENDING_WRITES, metrics);
+            Runtime.getRuntime().addShutdownHook(new Thread(historyManager::close));
 
             // 创建控制器并连接视图和模型
             new CalculatorController(view, parser, historyManager);
@@ -0,0 +1,275 @@
+package com.calculator.cli;
+
+import com.calculator.metrics.Metrics;
+import com.calculator.metrics.MetricsRegistry;
+import com.calculator.model.ExpressionParser;
+import com.calculator.model.HistoryConverter;
+import com.calculator.model.HistoryManager;
+import com.calculator.model.ResultCache;
+import com.calculator.server.EvaluationServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// 无界面模式：从标准输入或文件逐行读取表达式，结果逐行写到标准输出，错误写到标准错误；
+// 只依赖 model 包，不会加载 AWT/Swing
+public final class HeadlessCalculator {
+    static final int EXIT_OK = 0;
+    static final int EXIT_EVALUATION_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    // 服务收到终止信号后等待历史记录写完的上限
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "用法: java -jar calc.jar --headless [选项] [文件...]",
+            "  不指定文件或文件为 - 时从标准输入读取，每行一个表达式；形如 f(x)=x^2+1 的行定义函数",
+            "  -e, --eval <表达式>     计算给定表达式（可重复）",
+            "  -d, --define <定义>     定义函数，例如 \"f(x, y) = x^2 + y\"（可重复）",
+            "      --history <文件>    同时把结果写入历史记录文件",
+            "      --echo              输出 \"表达式 = 结果\" 而不只是结果",
+            "      --serve [主机:]端口  作为本地求值服务运行（默认只监听 127.0.0.1）",
+            "      --convert <输入> <输出>  转换历史记录文件格式（按输出扩展名: .bin 二进制、.csv、其余为文本）",
+            "  -h, --help              显示本帮助");
+
+    private final ExpressionParser parser;
+    private final HistoryManager historyManager;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final boolean echo;
+    private int failures;
+
+    HeadlessCalculator(ExpressionParser parser, HistoryManager historyManager,
+                       PrintStream out, PrintStream err, boolean echo) {
+        this.parser = parser;
+        this.historyManager = historyManager;
+        this.out = out;
+        this.err = err;
+        this.echo = echo;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    // 是否应以无界面模式启动：带任何命令行参数即视为无界面
+    public static boolean isRequested(String[] args) {
+        return args.length > 0;
+    }
+
+    static int run(String[] args) {
+        List<String> expressions = new ArrayList<>();
+        List<String> definitions = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        String historyFile = null;
+        String serveAddress = null;
+        boolean echo = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--headless":
+                    break;
+                case "-e":
+                case "--eval":
+                    if (++i == args.length) return usage("缺少表达式: " + arg);
+                    expressions.add(args[i]);
+                    break;
+                case "-d":
+                case "--define":
+                    if (++i == args.length) return usage("缺少函数定义: " + arg);
+                    definitions.add(args[i]);
+                    break;
+                case "--history":
+                    if (++i == args.length) return usage("缺少历史记录文件: " + arg);
+                    historyFile = args[i];
+                    break;
+                case "--echo":
+                    echo = true;
+                    break;
+                case "--serve":
+                    if (++i == args.length) return usage("缺少监听端口: " + arg);
+                    serveAddress = args[i];
+                    break;
+                case "--convert":
+                    if (i + 2 >= args.length) return usage("缺少输入或输出文件: " + arg);
+                    return convert(args[i + 1], args[i + 2]);
+                case "-h":
+                case "--help":
+                    System.out.println(USAGE);
+                    return EXIT_OK;
+                default:
+                    if (arg.startsWith("-") && !arg.equals("-")) return usage("未知选项: " + arg);
+                    files.add(arg);
+            }
+        }
+        Metrics metrics = MetricsRegistry.fromSystemProperties();
+        ExpressionParser parser = new ExpressionParser(new ResultCache(1024), metrics);
+        for (String definition : definitions) {
+            try {
+                parser.defineFunction(definition);
+            } catch (RuntimeException e) {
+                return usage("无效的函数定义: " + definition + ": " + e.getMessage());
+            }
+        }
+        if (serveAddress != null) return serve(serveAddress, historyFile, parser, metrics);
+        if (expressions.isEmpty() && files.isEmpty()) files.add("-");
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024),
+                false);
+        HistoryManager history = historyFile == null ? null : new HistoryManager(historyFile, 256, 1000,
+                HistoryManager.DEFAULT_MAX_PENDING_WRITES, metrics);
+        try {
+            HeadlessCalculator calculator = new HeadlessCalculator(parser, history, out, System.err, echo);
+            for (String expression : expressions) {
+                calculator.evaluateLine(expression, "-e", 0);
+            }
+            for (String file : files) {
+                if (file.equals("-")) {
+                    calculator.evaluateStream(System.in, "<stdin>");
+                } else {
+                    try (InputStream in = Files.newInputStream(Paths.get(file))) {
+                        calculator.evaluateStream(in, file);
+                    }
+                }
+            }
+            out.flush();
+            return calculator.failures > 0 ? EXIT_EVALUATION_FAILED : EXIT_OK;
+        } catch (IOException e) {
+            out.flush();
+            System.err.println("读取输入失败: " + e.getMessage());
+            return EXIT_USAGE;
+        } finally {
+            if (history != null) history.close();
+        }
+    }
+
+    private static int convert(String input, String output) {
+        try {
+            int count = HistoryConverter.convert(input, output);
+            System.err.println("已转换 " + count + " 条历史记录: " + input + " -> " + output);
+            return EXIT_OK;
+        } catch (IOException e) {
+            System.err.println("转换失败: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+    }
+
+    private static int serve(String address, String historyFile, ExpressionParser parser, Metrics metrics) {
+        InetSocketAddress bindAddress;
+        try {
+            int colon = address.lastIndexOf(':');
+            String host = colon < 0 ? "127.0.0.1" : address.substring(0, colon);
+            bindAddress = new InetSocketAddress(host, Integer.parseInt(address.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            return usage("无效的监听地址: " + address);
+        }
+
+        HistoryManager history = historyFile == null ? null : new HistoryManager(historyFile, 256, 1000,
+                HistoryManager.DEFAULT_MAX_PENDING_WRITES, metrics);
+        // 资源只在这里释放：关闭钩子只让事件循环退出，再等待本方法的 finally 写完历史
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread shutdownHook = null;
+        try (EvaluationServer server = new EvaluationServer(parser, history, bindAddress)) {
+            shutdownHook = new Thread(() -> {
+                server.stop();
+                awaitQuietly(stopped);
+            });
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            System.err.println("求值服务已启动: " + bindAddress.getHostString() + ":" + server.getPort());
+            server.run();
+            return EXIT_OK;
+        } catch (IOException e) {
+            System.err.println("求值服务出错: " + e.getMessage());
+            return EXIT_USAGE;
+        } finally {
+            if (history != null) history.close();
+            stopped.countDown();
+            removeQuietly(shutdownHook);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            if (!latch.await(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("等待历史记录写入超时，部分记录可能未保存");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 正常退出时注销钩子；JVM 已在关闭过程中时无法注销，也不需要
+    private static void removeQuietly(Thread shutdownHook) {
+        if (shutdownHook == null) return;
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // 关闭钩子正在运行
+        }
+    }
+
+    private static int usage(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        return EXIT_USAGE;
+    }
+
+    // 逐行求值；输入暂时没有更多数据时才刷新输出，管道中整批输出、交互时逐行可见
+    void evaluateStream(InputStream input, String source) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            evaluateLine(line, source, lineNumber);
+            if (!reader.ready()) out.flush();
+        }
+    }
+
+    void evaluateLine(String line, String source, int lineNumber) {
+        String expression = line.trim();
+        if (expression.isEmpty() || expression.startsWith("#")) return;
+        if (expression.indexOf('=') >= 0) {
+            // 函数定义不产生输出行
+            try {
+                parser.defineFunction(expression);
+            } catch (RuntimeException e) {
+                failures++;
+                err.println(source + (lineNumber > 0 ? ":" + lineNumber : "") + ": '" + expression + "': " + e.getMessage());
+            }
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            double result = parser.evaluate(expression);
+            long latencyNanos = System.nanoTime() - start;
+
+            String resultStr = String.format(Locale.ROOT, "%.6f", result);
+            if (echo) {
+                out.print(expression);
+                out.print(" = ");
+            }
+            out.println(resultStr);
+            if (historyManager != null) historyManager.saveHistory(expression, result, latencyNanos);
+        } catch (Exception e) {
+            failures++;
+            // 输出保持与输入逐行对应，错误详情写到标准错误
+            if (echo) {
+                out.print(expression);
+                out.print(" = ");
+            }
+            out.println("NaN");
+            out.flush();
+            err.println(source + (lineNumber > 0 ? ":" + lineNumber : "") + ": '" + expression + "': " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.calculator.controller;
+
+import com.calculator.model.BatchResult;
+import com.calculator.model.ProgressListener;
+import com.calculator.view.CalculatorGUI;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+// 在后台线程执行文件任务：进度通过 SwingWorker 的进度属性合并后刷新，逐行错误成批追加到结果区，
+// 完成、失败、取消的回调都在 EDT 上执行。取消是协作式的：SwingWorker 在 cancel 时立即调用 done()，
+// 但 work() 要到下一次检查才返回，因此界面保持锁定，直到 work() 真正结束才报告取消
+abstract class BackgroundTask<T> extends SwingWorker<T, String> implements ProgressListener {
+    // 逐行错误最多显示的条数，其余只计数，避免结果区被大文件撑爆
+    private static final int MAX_PUBLISHED_ERRORS = 1000;
+
+    protected final CalculatorGUI view;
+    private final String title;
+    private volatile int errorCount;
+    private volatile boolean workFinished;
+    // 只在 EDT 上访问
+    private boolean completed;
+
+    BackgroundTask(CalculatorGUI view, String title) {
+        this.view = view;
+        this.title = title;
+        addPropertyChangeListener(event -> {
+            if ("progress".equals(event.getPropertyName()) && !isCancelled()) {
+                view.setProgress((Integer) event.getNewValue(), title + " " + event.getNewValue() + "%");
+            }
+        });
+    }
+
+    void start() {
+        view.showProgress(title);
+        execute();
+    }
+
+    // 后台执行的任务本身
+    protected abstract T work() throws Exception;
+
+    @Override
+    protected final T doInBackground() throws Exception {
+        try {
+            return work();
+        } finally {
+            workFinished = true;
+            // 已取消时 done() 早已执行过，由这里补上收尾
+            if (isCancelled()) SwingUtilities.invokeLater(this::complete);
+        }
+    }
+
+    @Override
+    public void onProgress(long done, long total) {
+        if (total > 0) setProgress((int) Math.min(100, done * 100 / total));
+    }
+
+    @Override
+    public void onLineError(BatchResult.LineError error) {
+        if (++errorCount <= MAX_PUBLISHED_ERRORS) publish(error + "\n");
+    }
+
+    @Override
+    protected void process(List<String> chunks) {
+        StringBuilder sb = new StringBuilder();
+        for (String chunk : chunks) {
+            sb.append(chunk);
+        }
+        view.appendResult(sb.toString());
+    }
+
+    @Override
+    protected final void done() {
+        if (isCancelled() && !workFinished) {
+            view.setProgress(0, "正在取消…");
+            return;
+        }
+        complete();
+    }
+
+    private void complete() {
+        if (completed) return;
+        completed = true;
+        view.hideProgress();
+        if (errorCount > MAX_PUBLISHED_ERRORS) {
+            view.appendResult("……另有 " + (errorCount - MAX_PUBLISHED_ERRORS) + " 条错误未显示\n");
+        }
+        if (isCancelled()) {
+            cancelled();
+            return;
+        }
+        try {
+            succeeded(get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                cancelled();
+            } else {
+                failed(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected abstract void succeeded(T result);
+
+    protected abstract void failed(Exception e);
+
+    protected void cancelled() {
+        view.appendResult("操作已取消\n");
+    }
+}
@@ -1,5 +1,6 @@
 package com.calculator.controller;
 
+import com.calculator.model.BatchResult;
 import com.calculator.model.ExpressionParser;
 import com.calculator.model.HistoryManager;
 import com.calculator.view.CalculatorGUI;
@@ -15,6 +16,7 @@ public class CalculatorController {
     private final CalculatorGUI view;
     private final ExpressionParser parser;
     private final HistoryManager historyManager;
+    private BackgroundTask<?> currentTask;
 
     public CalculatorController(CalculatorGUI view, ExpressionParser parser, HistoryManager historyManager) {
         this.view = view;
@@ -35,6 +37,20 @@ public class CalculatorController {
         view.getSearchButton().addActionListener(this::handleSearch);
         view.getStatsButton().addActionListener(this::handleStats);
         view.getAdvancedButton().addActionListener(this::handleAdvanced);
+        view.getCancelButton().addActionListener(this::handleCancel);
+    }
+
+    private void runInBackground(BackgroundTask<?> task) {
+        currentTask = task;
+        task.start();
+    }
+
+    // 协作式取消：后台任务在当前块处理完后停止，之前文件按钮保持禁用
+    private void handleCancel(ActionEvent e) {
+        if (currentTask != null && !currentTask.isDone()) {
+            currentTask.cancel(false);
+            view.getCancelButton().setEnabled(false);
+        }
     }
 
     private void handleCalculate(ActionEvent e) {
@@ -45,12 +61,15 @@ public class CalculatorController {
         }
 
         try {
+            long start = System.nanoTime();
             double result = parser.evaluate(expression);
+            long latencyNanos = System.nanoTime() - start;
             String resultStr = String.format("%.6f", result);
             String output = "in " + expression + "\nout " + resultStr + "\n\n";
 
             view.appendResult(output);
-            historyManager.saveHistory(expression, result);
+            // 事件分派线程不能等待写入线程腾出容量；手动输入的速度也不需要背压
+            historyManager.offerHistory(expression, result, latencyNanos);
             view.focusExpressionField();
         } catch (Exception ex) {
             view.showError("计算错误: " + ex.getMessage(), "错误");
@@ -70,8 +89,24 @@ public class CalculatorController {
     private void handleClearHistory(ActionEvent e) {
         int option = view.showConfirmDialog("确定要清除所有历史记录吗？", "确认清除");
         if (option == JOptionPane.YES_OPTION) {
-            historyManager.clearHistory();
-            view.setResult("历史记录已清除");
+            // 需要等待写入线程重写文件，放到后台执行
+            runInBackground(new BackgroundTask<Void>(view, "正在清除历史记录") {
+                @Override
+                protected Void work() throws Exception {
+                    historyManager.clearHistory();
+                    return null;
+                }
+
+                @Override
+                protected void succeeded(Void result) {
+                    view.setResult("历史记录已清除");
+                }
+
+                @Override
+                protected void failed(Exception ex) {
+                    view.showError("清除历史文件失败: " + ex.getMessage() + "\n文件中的记录在下次启动时仍会加载", "错误");
+                }
+            });
         }
     }
 
@@ -83,19 +118,31 @@ public class CalculatorController {
         int returnValue = fileChooser.showOpenDialog(view);
         if (returnValue == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            try {
-                view.setResult("正在处理文件: " + selectedFile.getName() + "\n");
-                historyManager.processExpressionFile(selectedFile.getAbsolutePath(), parser);
-                view.appendResult("文件处理完成！\n");
-                view.appendResult(historyManager.getHistory());
-                view.showInfo("文件处理完成！成功处理", "成功");
-            } catch (IOException ex) {
-                view.showError("文件处理错误: " + ex.getMessage(), "错误");
-                view.appendResult("文件处理失败: " + ex.getMessage());
-            } catch (Exception ex) {
-                view.showError("计算错误: " + ex.getMessage(), "错误");
-                view.appendResult("计算错误: " + ex.getMessage());
-            }
+            view.setResult("正在处理文件: " + selectedFile.getName() + "\n");
+            runInBackground(new BackgroundTask<BatchResult>(view, "正在处理 " + selectedFile.getName()) {
+                @Override
+                protected BatchResult work() throws Exception {
+                    return historyManager.processExpressionFile(selectedFile.getAbsolutePath(), parser, this);
+                }
+
+                @Override
+                protected void succeeded(BatchResult batch) {
+                    view.appendResult("文件处理完成！" + batch + "\n");
+                    view.appendResult(historyManager.getHistory());
+                    view.showInfo("文件处理完成！" + batch, "成功");
+                }
+
+                @Override
+                protected void failed(Exception ex) {
+                    if (ex instanceof IOException) {
+                        view.showError("文件处理错误: " + ex.getMessage(), "错误");
+                        view.appendResult("文件处理失败: " + ex.getMessage());
+                    } else {
+                        view.showError("计算错误: " + ex.getMessage(), "错误");
+                        view.appendResult("计算错误: " + ex.getMessage());
+                    }
+                }
+            });
         }
     }
 
@@ -104,8 +151,10 @@ public class CalculatorController {
         fileChooser.setDialogTitle("导出历史记录");
         FileNameExtensionFilter txtFilter = new FileNameExtensionFilter("文本文件 (*.txt)", "txt");
         FileNameExtensionFilter csvFilter = new FileNameExtensionFilter("CSV文件 (*.csv)", "csv");
+        FileNameExtensionFilter binFilter = new FileNameExtensionFilter("二进制文件 (*.bin)", "bin");
         fileChooser.addChoosableFileFilter(txtFilter);
         fileChooser.addChoosableFileFilter(csvFilter);
+        fileChooser.addChoosableFileFilter(binFilter);
         fileChooser.setFileFilter(txtFilter);
 
         int returnValue = fileChooser.showSaveDialog(view);
@@ -118,35 +167,64 @@ public class CalculatorController {
                 if (!selectedFile.getName().toLowerCase().endsWith(".csv")) {
                     selectedFile = new File(selectedFile.getAbsolutePath() + ".csv");
                 }
+            } else if (fileChooser.getFileFilter() == binFilter) {
+                format = "bin";
+                if (!selectedFile.getName().toLowerCase().endsWith(".bin")) {
+                    selectedFile = new File(selectedFile.getAbsolutePath() + ".bin");
+                }
             } else if (!selectedFile.getName().toLowerCase().endsWith(".txt")) {
                 selectedFile = new File(selectedFile.getAbsolutePath() + ".txt");
             }
 
-            try {
-                historyManager.exportHistory(selectedFile.getAbsolutePath(), format);
-                view.showInfo("历史记录已成功导出到: " + selectedFile.getName(), "导出成功");
-            } catch (IOException ex) {
-                view.showError("导出失败: " + ex.getMessage(), "错误");
-            }
+            File target = selectedFile;
+            String exportFormat = format;
+            runInBackground(new BackgroundTask<Void>(view, "正在导出 " + target.getName()) {
+                @Override
+                protected Void work() throws Exception {
+                    historyManager.exportHistory(target.getAbsolutePath(), exportFormat, this);
+                    return null;
+                }
+
+                @Override
+                protected void succeeded(Void result) {
+                    view.showInfo("历史记录已成功导出到: " + target.getName(), "导出成功");
+                }
+
+                @Override
+                protected void failed(Exception ex) {
+                    view.showError("导出失败: " + ex.getMessage(), "错误");
+                }
+            });
         }
     }
 
     private void handleImport(ActionEvent e) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("导入历史记录");
-        fileChooser.setFileFilter(new FileNameExtensionFilter("文本/CSV文件", "txt", "csv"));
+        fileChooser.setFileFilter(new FileNameExtensionFilter("文本/CSV/二进制文件", "txt", "csv", "bin"));
 
         int returnValue = fileChooser.showOpenDialog(view);
         if (returnValue == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            try {
-                historyManager.importHistory(selectedFile.getAbsolutePath());
-                view.setResult("历史记录导入成功！\n");
-                view.appendResult(historyManager.getHistory());
-                view.showInfo("历史记录已成功导入", "导入成功");
-            } catch (IOException ex) {
-                view.showError("导入失败: " + ex.getMessage(), "错误");
-            }
+            runInBackground(new BackgroundTask<Void>(view, "正在导入 " + selectedFile.getName()) {
+                @Override
+                protected Void work() throws Exception {
+                    historyManager.importHistory(selectedFile.getAbsolutePath(), this);
+                    return null;
+                }
+
+                @Override
+                protected void succeeded(Void result) {
+                    view.setResult("历史记录导入成功！\n");
+                    view.appendResult(historyManager.getHistory());
+                    view.showInfo("历史记录已成功导入", "导入成功");
+                }
+
+                @Override
+                protected void failed(Exception ex) {
+                    view.showError("导入失败: " + ex.getMessage(), "错误");
+                }
+            });
         }
     }
 
@@ -179,7 +257,7 @@ public class CalculatorController {
     }
 
     private void handleAdvanced(ActionEvent e) {
-        JPanel panel = new JPanel(new GridLayout(3, 2, 10, 10));
+        JPanel panel = new JPanel(new GridLayout(4, 2, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
 
         JLabel maxLabel = new JLabel("最大显示条目:");
@@ -192,19 +270,25 @@ public class CalculatorController {
         JLabel filterLabel = new JLabel("过滤条件:");
         JTextField filterField = new JTextField();
 
+        JLabel pageLabel = new JLabel("页码:");
+        JSpinner pageSpinner = new JSpinner(new SpinnerNumberModel(1, 1, Integer.MAX_VALUE, 1));
+
         panel.add(maxLabel);
         panel.add(maxSpinner);
         panel.add(orderLabel);
         panel.add(orderCombo);
         panel.add(filterLabel);
         panel.add(filterField);
+        panel.add(pageLabel);
+        panel.add(pageSpinner);
 
         int result = view.showCustomDialog(panel, "高级历史选项");
         if (result == JOptionPane.OK_OPTION) {
             int maxEntries = (Integer) maxSpinner.getValue();
             boolean reverseOrder = orderCombo.getSelectedIndex() == 0;
             String filter = filterField.getText().trim();
-            view.setResult(historyManager.getHistory(maxEntries, filter, reverseOrder));
+            int offset = (int) Math.min(Integer.MAX_VALUE, ((Integer) pageSpinner.getValue() - 1L) * maxEntries);
+            view.setResult(historyManager.getHistory(offset, maxEntries, filter, reverseOrder));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.calculator.metrics;
+
+// 单调递增的计数器，如成功/失败次数、处理的行数
+public interface Counter {
+    Counter NOOP = new Counter() {
+        @Override
+        public void add(long delta) {
+        }
+
+        @Override
+        public long get() {
+            return 0;
+        }
+    };
+
+    void add(long delta);
+
+    long get();
+
+    default void increment() {
+        add(1);
+    }
+}
@@ -0,0 +1,116 @@
+package com.calculator.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// JFR 事件 com.calculator.Operation 的反射桥：项目按 Java 8 编译，不直接引用 jdk.jfr；
+// 运行时存在 jdk.jfr.EventFactory（JDK 9+）时用它动态定义事件类型，否则 isAvailable 为 false。
+// 事件在操作开始时 begin、结束时 end，耗时就是 JFR 自带的 duration
+final class JfrSupport {
+    private static final MethodHandle TYPE_ENABLED;
+    private static final MethodHandle NEW_EVENT;
+    private static final MethodHandle SET;
+    private static final MethodHandle BEGIN;
+    private static final MethodHandle END;
+    private static final MethodHandle SHOULD_COMMIT;
+    private static final MethodHandle COMMIT;
+    private static final Object FACTORY;
+    private static final Object TYPE;
+
+    static {
+        Object factory = null;
+        Object type = null;
+        MethodHandle typeEnabled = null;
+        MethodHandle newEvent = null;
+        MethodHandle set = null;
+        MethodHandle begin = null;
+        MethodHandle end = null;
+        MethodHandle shouldCommit = null;
+        MethodHandle commit = null;
+        try {
+            ClassLoader loader = JfrSupport.class.getClassLoader();
+            Class<?> eventClass = Class.forName("jdk.jfr.Event", false, loader);
+            Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory", false, loader);
+            Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement", false, loader);
+            Class<?> valueClass = Class.forName("jdk.jfr.ValueDescriptor", false, loader);
+            Class<?> typeClass = Class.forName("jdk.jfr.EventType", false, loader);
+            Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+            Constructor<?> value = valueClass.getConstructor(Class.class, String.class, List.class);
+
+            List<Object> eventAnnotations = Arrays.asList(
+                    annotation.newInstance(jfrAnnotation(loader, "Name"), "com.calculator.Operation"),
+                    annotation.newInstance(jfrAnnotation(loader, "Label"), "Calculator Operation"),
+                    annotation.newInstance(jfrAnnotation(loader, "Category"), new String[]{"Calculator"}),
+                    annotation.newInstance(jfrAnnotation(loader, "Description"), "表达式求值、历史读写等被计时的操作"),
+                    annotation.newInstance(jfrAnnotation(loader, "StackTrace"), Boolean.FALSE));
+            List<Object> fields = Collections.singletonList(value.newInstance(String.class, "operation",
+                    Collections.singletonList(annotation.newInstance(jfrAnnotation(loader, "Label"), "Operation"))));
+            factory = factoryClass.getMethod("create", List.class, List.class)
+                    .invoke(null, eventAnnotations, fields);
+            type = factoryClass.getMethod("getEventType").invoke(factory);
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            typeEnabled = lookup.unreflect(typeClass.getMethod("isEnabled"));
+            newEvent = lookup.unreflect(factoryClass.getMethod("newEvent"));
+            set = lookup.unreflect(eventClass.getMethod("set", int.class, Object.class));
+            begin = lookup.unreflect(eventClass.getMethod("begin"));
+            end = lookup.unreflect(eventClass.getMethod("end"));
+            shouldCommit = lookup.unreflect(eventClass.getMethod("shouldCommit"));
+            commit = lookup.unreflect(eventClass.getMethod("commit"));
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            factory = null;
+        }
+        FACTORY = factory;
+        TYPE = type;
+        TYPE_ENABLED = typeEnabled;
+        NEW_EVENT = newEvent;
+        SET = set;
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        COMMIT = commit;
+    }
+
+    private JfrSupport() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends Annotation> jfrAnnotation(ClassLoader loader, String name)
+            throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName("jdk.jfr." + name, false, loader);
+    }
+
+    static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    // 开始一个事件；录制未开启该事件或 JFR 不可用时返回 null，调用方不必再调用 end
+    static Object begin(String operation) {
+        if (FACTORY == null) return null;
+        try {
+            if (!(boolean) TYPE_ENABLED.invoke(TYPE)) return null;
+            Object event = NEW_EVENT.invoke(FACTORY);
+            SET.invoke(event, 0, operation);
+            BEGIN.invoke(event);
+            return event;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    // 结束并提交 begin 返回的事件；低于录制阈值的事件由 shouldCommit 过滤
+    static void end(Object event) {
+        if (event == null) return;
+        try {
+            END.invoke(event);
+            if ((boolean) SHOULD_COMMIT.invoke(event)) COMMIT.invoke(event);
+        } catch (Throwable ignored) {
+            // 度量失败不影响被计时的操作
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.calculator.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// 把 MetricsRegistry 导出为一个动态 MBean（com.calculator:type=Metrics），属性在读取时从注册表实时计算：
+//   <计时器>.count / .mean / .p50 / .p99 / .max（纳秒），<计数器>
+public final class JmxMetricsExporter implements DynamicMBean {
+    public static final String OBJECT_NAME = "com.calculator:type=Metrics";
+
+    private final MetricsRegistry registry;
+
+    public JmxMetricsExporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static void register(MetricsRegistry registry) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) server.unregisterMBean(name);
+        server.registerMBean(new JmxMetricsExporter(registry), name);
+    }
+
+    static void registerQuietly(MetricsRegistry registry) {
+        try {
+            register(registry);
+        } catch (JMException | RuntimeException e) {
+            System.err.println("无法注册 JMX 度量: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Map<String, Long> counters = registry.getCounters();
+        if (counters.containsKey(attribute)) return counters.get(attribute);
+
+        int dot = attribute.lastIndexOf('.');
+        if (dot > 0) {
+            LatencyHistogram histogram = registry.getHistograms().get(attribute.substring(0, dot));
+            if (histogram != null) {
+                switch (attribute.substring(dot + 1)) {
+                    case "count": return histogram.getCount();
+                    case "mean": return (long) histogram.getMean();
+                    case "p50": return histogram.getPercentile(50);
+                    case "p99": return histogram.getPercentile(99);
+                    case "max": return histogram.getMax();
+                    default: break;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException ignored) {
+                // 按 DynamicMBean 约定跳过不存在的属性
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("度量属性只读: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if ("reset".equals(actionName)) {
+            registry.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    // 每次读取都重新生成，新注册的计时器和计数器会出现在 JConsole 刷新后的属性列表中
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String timer : registry.getHistograms().keySet()) {
+            for (String suffix : new String[]{"count", "mean", "p50", "p99", "max"}) {
+                attributes.add(new MBeanAttributeInfo(timer + "." + suffix, "java.lang.Long",
+                        suffix.equals("count") ? "次数" : "耗时（纳秒）", true, false, false));
+            }
+        }
+        for (String counter : registry.getCounters().keySet()) {
+            attributes.add(new MBeanAttributeInfo(counter, "java.lang.Long", "计数", true, false, false));
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "清零所有度量",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "计算器度量",
+                attributes.toArray(new MBeanAttributeInfo[0]), null,
+                new MBeanOperationInfo[]{reset}, null);
+    }
+}
@@ -0,0 +1,23 @@
+package com.calculator.metrics;
+
+// 可插拔的度量接口：调用方在构造时取得计时器和计数器并保存为字段，热路径上只调用 isEnabled/record/increment；
+// NOOP 的所有操作都是空方法，关闭度量时开销可以忽略
+public interface Metrics {
+    Metrics NOOP = new Metrics() {
+        @Override
+        public OperationTimer timer(String name) {
+            return OperationTimer.NOOP;
+        }
+
+        @Override
+        public Counter counter(String name) {
+            return Counter.NOOP;
+        }
+    };
+
+    // 同名调用返回同一个计时器
+    OperationTimer timer(String name);
+
+    // 同名调用返回同一个计数器
+    Counter counter(String name);
+}
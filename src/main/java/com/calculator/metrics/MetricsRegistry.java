@@ -0,0 +1,114 @@
+package com.calculator.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 内存中的度量实现：计时器为并发直方图，计数器为 LongAdder；可选地为每次 start/stop 计时提交一个 JFR 事件
+public class MetricsRegistry implements Metrics {
+    // 设为 true 时启用度量并注册 JMX
+    public static final String ENABLED_PROPERTY = "calculator.metrics";
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdderCounter> counters = new ConcurrentHashMap<>();
+    private final boolean jfrEvents;
+
+    public MetricsRegistry() {
+        this(false);
+    }
+
+    // jfrEvents 为 true 且运行时支持 JFR 时，每次 start/stop 计时同时提交 com.calculator.Operation 事件
+    public MetricsRegistry(boolean jfrEvents) {
+        this.jfrEvents = jfrEvents && JfrSupport.isAvailable();
+    }
+
+    // 按系统属性 calculator.metrics 决定是否启用；启用时开启 JFR 事件并注册 JMX，否则返回 NOOP
+    public static Metrics fromSystemProperties() {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY)) return NOOP;
+        MetricsRegistry registry = new MetricsRegistry(true);
+        JmxMetricsExporter.registerQuietly(registry);
+        return registry;
+    }
+
+    @Override
+    public OperationTimer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    @Override
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdderCounter());
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().histogram);
+        }
+        return snapshot;
+    }
+
+    public Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdderCounter> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    public void reset() {
+        for (Timer timer : timers.values()) {
+            timer.histogram.reset();
+        }
+        for (LongAdderCounter counter : counters.values()) {
+            counter.value.reset();
+        }
+    }
+
+    private final class Timer implements OperationTimer {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void record(long nanos) {
+            histogram.record(nanos);
+        }
+
+        // JFR 事件在操作开始时 begin，结束时 end，事件时间线与操作本身对齐
+        @Override
+        public Sample start() {
+            Object event = jfrEvents ? JfrSupport.begin(name) : null;
+            long start = System.nanoTime();
+            if (event == null) return () -> record(System.nanoTime() - start);
+            return () -> {
+                record(System.nanoTime() - start);
+                JfrSupport.end(event);
+            };
+        }
+    }
+
+    private static final class LongAdderCounter implements Counter {
+        private final LongAdder value = new LongAdder();
+
+        @Override
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        @Override
+        public long get() {
+            return value.sum();
+        }
+    }
+}
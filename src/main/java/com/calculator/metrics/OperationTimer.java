@@ -0,0 +1,35 @@
+package com.calculator.metrics;
+
+// 一类操作的耗时分布与次数
+public interface OperationTimer {
+    OperationTimer NOOP = new OperationTimer() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(long nanos) {
+        }
+    };
+
+    // 为 false 时调用方可以跳过取时间戳
+    boolean isEnabled();
+
+    void record(long nanos);
+
+    // 便于 try/finally 中使用：OperationTimer.Sample sample = timer.start(); ... sample.stop();
+    default Sample start() {
+        if (!isEnabled()) return Sample.NOOP;
+        long start = System.nanoTime();
+        return () -> record(System.nanoTime() - start);
+    }
+
+    // 一次进行中的计时，stop 只应调用一次
+    interface Sample {
+        Sample NOOP = () -> {
+        };
+
+        void stop();
+    }
+}
@@ -0,0 +1,154 @@
+package com.calculator.model;
+
+import java.util.Arrays;
+
+// 列式批量求值：按块执行指令，每条指令在整块数据上循环一次，循环体保持简单以便 C2 自动向量化
+final class BatchEvaluator {
+    static final int CHUNK_SIZE = 1024;
+
+    private BatchEvaluator() {
+    }
+
+    static int rowCount(CompiledExpression compiled, double[][] columns) {
+        checkColumns(compiled, columns);
+        return columns.length == 0 ? 0 : columns[0].length;
+    }
+
+    static void evaluate(CompiledExpression compiled, double[][] columns, double[] out) {
+        checkColumns(compiled, columns);
+        for (int i = 0; i < compiled.getVariableCount(); i++) {
+            if (columns[i].length < out.length) {
+                throw new IllegalArgumentException("第 " + (i + 1) + " 列长度不足: " + columns[i].length);
+            }
+        }
+
+        byte[] code = compiled.code();
+        int[] args = compiled.args();
+        double[] constants = compiled.constants();
+        double[][] stack = new double[compiled.maxStack()][Math.min(CHUNK_SIZE, out.length)];
+
+        for (int from = 0; from < out.length; from += CHUNK_SIZE) {
+            int len = Math.min(CHUNK_SIZE, out.length - from);
+            int sp = 0;
+
+            for (int pc = 0; pc < code.length; pc++) {
+                byte op = code[pc];
+                switch (op) {
+                    case CompiledExpression.CONST:
+                        Arrays.fill(stack[sp++], 0, len, constants[args[pc]]);
+                        break;
+                    case CompiledExpression.LOAD:
+                        System.arraycopy(columns[args[pc]], from, stack[sp++], 0, len);
+                        break;
+                    case CompiledExpression.DUP:
+                        System.arraycopy(stack[sp - 1], 0, stack[sp], 0, len);
+                        sp++;
+                        break;
+                    case CompiledExpression.ADD:
+                        sp--;
+                        add(stack[sp - 1], stack[sp], len);
+                        break;
+                    case CompiledExpression.SUB:
+                        sp--;
+                        subtract(stack[sp - 1], stack[sp], len);
+                        break;
+                    case CompiledExpression.MUL:
+                        sp--;
+                        multiply(stack[sp - 1], stack[sp], len);
+                        break;
+                    case CompiledExpression.DIV:
+                        sp--;
+                        divide(stack[sp - 1], stack[sp], len);
+                        break;
+                    case CompiledExpression.POW:
+                        sp--;
+                        power(stack[sp - 1], stack[sp], len);
+                        break;
+                    case CompiledExpression.MIN:
+                    case CompiledExpression.MAX:
+                    case CompiledExpression.HYPOT:
+                    case CompiledExpression.LOG:
+                    case CompiledExpression.DISCARD:
+                        sp--;
+                        applyBinary(op, stack[sp - 1], stack[sp], len);
+                        break;
+                    default:
+                        applyFunction(op, stack[sp - 1], len);
+                        break;
+                }
+            }
+
+            System.arraycopy(stack[0], 0, out, from, len);
+        }
+    }
+
+    private static void checkColumns(CompiledExpression compiled, double[][] columns) {
+        if (columns.length < compiled.getVariableCount()) {
+            throw new IllegalArgumentException("变量个数不匹配: 需要 " + compiled.getVariableCount() + " 列, 实际 " + columns.length + " 列");
+        }
+    }
+
+    private static void add(double[] a, double[] b, int len) {
+        for (int i = 0; i < len; i++) a[i] += b[i];
+    }
+
+    private static void subtract(double[] a, double[] b, int len) {
+        for (int i = 0; i < len; i++) a[i] -= b[i];
+    }
+
+    private static void multiply(double[] a, double[] b, int len) {
+        for (int i = 0; i < len; i++) a[i] *= b[i];
+    }
+
+    // 先单独检查除数，再执行无分支的除法循环
+    private static void divide(double[] a, double[] b, int len) {
+        for (int i = 0; i < len; i++) {
+            if (b[i] == 0) throw new ArithmeticException("除零错误");
+        }
+        for (int i = 0; i < len; i++) a[i] /= b[i];
+    }
+
+    private static void power(double[] a, double[] b, int len) {
+        for (int i = 0; i < len; i++) a[i] = Math.pow(a[i], b[i]);
+    }
+
+    private static void applyBinary(byte op, double[] a, double[] b, int len) {
+        switch (op) {
+            case CompiledExpression.MIN:
+                for (int i = 0; i < len; i++) a[i] = Math.min(a[i], b[i]);
+                break;
+            case CompiledExpression.MAX:
+                for (int i = 0; i < len; i++) a[i] = Math.max(a[i], b[i]);
+                break;
+            case CompiledExpression.DISCARD:
+                System.arraycopy(b, 0, a, 0, len);
+                break;
+            default:
+                for (int i = 0; i < len; i++) a[i] = CompiledExpression.applyBinary(op, a[i], b[i]);
+                break;
+        }
+    }
+
+    private static void applyFunction(byte op, double[] v, int len) {
+        switch (op) {
+            case CompiledExpression.ABS:
+                for (int i = 0; i < len; i++) v[i] = Math.abs(v[i]);
+                break;
+            case CompiledExpression.FLOOR:
+                for (int i = 0; i < len; i++) v[i] = Math.floor(v[i]);
+                break;
+            case CompiledExpression.CEIL:
+                for (int i = 0; i < len; i++) v[i] = Math.ceil(v[i]);
+                break;
+            case CompiledExpression.SQRT:
+                for (int i = 0; i < len; i++) {
+                    if (v[i] < 0) throw new ArithmeticException("负数的平方根");
+                }
+                for (int i = 0; i < len; i++) v[i] = Math.sqrt(v[i]);
+                break;
+            default:
+                for (int i = 0; i < len; i++) v[i] = CompiledExpression.applyFunction(op, v[i]);
+                break;
+        }
+    }
+}
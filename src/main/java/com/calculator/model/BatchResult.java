@@ -0,0 +1,69 @@
+package com.calculator.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// 批量处理结果：成功/失败计数以及带行号的错误明细
+public class BatchResult {
+    private int successCount;
+    private int failureCount;
+    private final List<LineError> errors = new ArrayList<>();
+
+    void addSuccesses(int count) {
+        successCount += count;
+    }
+
+    LineError addFailure(int lineNumber, String expression, String message) {
+        failureCount++;
+        LineError error = new LineError(lineNumber, expression, message);
+        errors.add(error);
+        return error;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    public List<LineError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return "成功 " + successCount + " 条, 失败 " + failureCount + " 条";
+    }
+
+    public static class LineError {
+        private final int lineNumber;
+        private final String expression;
+        private final String message;
+
+        LineError(int lineNumber, String expression, String message) {
+            this.lineNumber = lineNumber;
+            this.expression = expression;
+            this.message = message;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "第 " + lineNumber + " 行 '" + expression + "': " + message;
+        }
+    }
+}
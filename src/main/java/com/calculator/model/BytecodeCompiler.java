@@ -0,0 +1,276 @@
+package com.calculator.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 把后缀指令翻译成一个实现 JitSupport.Evaluator 的类：每条指令对应几条 JVM 指令，没有分支和求值栈数组，
+// HotSpot 可以像手写代码一样内联和优化。每个类使用独立的类加载器，表达式不再被引用时可以一起卸载。
+// Java 8 没有隐藏类，因此用自定义类加载器定义普通类；直线代码不需要 StackMapTable
+final class BytecodeCompiler {
+    private static final String EVALUATOR = "com/calculator/model/JitSupport$Evaluator";
+    private static final String SUPPORT = "com/calculator/model/JitSupport";
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int DALOAD = 0x31;
+    private static final int POP2 = 0x58;
+    private static final int DUP2 = 0x5c;
+    private static final int DUP2_X2 = 0x5e;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int L2D = 0x8a;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private BytecodeCompiler() {
+    }
+
+    // 返回 null 表示无法生成（指令不支持、方法过大或类定义失败），调用方继续解释执行
+    static JitSupport.Evaluator compile(CompiledExpression expression) {
+        try {
+            String name = "com.calculator.model.GeneratedExpression" + CLASS_COUNTER.incrementAndGet();
+            byte[] classFile = generate(name.replace('.', '/'), expression);
+            if (classFile == null) return null;
+            Class<?> type = new Loader(BytecodeCompiler.class.getClassLoader()).define(name, classFile);
+            return (JitSupport.Evaluator) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] generate(String internalName, CompiledExpression expression) throws IOException {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(internalName);
+        int objectClass = pool.classRef("java/lang/Object");
+        int evaluatorClass = pool.classRef(EVALUATOR);
+        int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+        int codeName = pool.utf8("Code");
+        int initName = pool.utf8("<init>");
+        int initType = pool.utf8("()V");
+        int evaluateName = pool.utf8("evaluate");
+        int evaluateType = pool.utf8("([D)D");
+
+        byte[] code = translate(expression, pool);
+        if (code == null || code.length > MAX_CODE_LENGTH || pool.size() > 0xFFFF) return null;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + code.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        pool.writeTo(out);
+        out.writeShort(0x0031); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(objectClass);
+        out.writeShort(1);
+        out.writeShort(evaluatorClass);
+        out.writeShort(0); // fields
+
+        out.writeShort(2); // methods
+        byte[] init = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                (byte) RETURN};
+        writeMethod(out, 0x0001, initName, initType, codeName, 1, 1, init);
+        // 每个 double 占两个栈字，LOAD 时还需要数组引用和下标
+        writeMethod(out, 0x0001, evaluateName, evaluateType, codeName, expression.maxStack() * 2 + 2, 2, code);
+
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeName,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static byte[] translate(CompiledExpression expression, ConstantPool pool) {
+        byte[] program = expression.code();
+        int[] args = expression.args();
+        double[] constants = expression.constants();
+        ByteArrayOutputStream code = new ByteArrayOutputStream(program.length * 4 + 1);
+
+        for (int pc = 0; pc < program.length; pc++) {
+            switch (program[pc]) {
+                case CompiledExpression.CONST:
+                    emitIndexed(code, LDC2_W, pool.doubleConstant(constants[args[pc]]));
+                    break;
+                case CompiledExpression.LOAD:
+                    code.write(ALOAD_1);
+                    emitInt(code, args[pc]);
+                    code.write(DALOAD);
+                    break;
+                case CompiledExpression.DUP: code.write(DUP2); break;
+                case CompiledExpression.ADD: code.write(DADD); break;
+                case CompiledExpression.SUB: code.write(DSUB); break;
+                case CompiledExpression.MUL: code.write(DMUL); break;
+                case CompiledExpression.DIV: invoke(code, pool, SUPPORT, "divide", "(DD)D"); break;
+                case CompiledExpression.POW: invoke(code, pool, "java/lang/Math", "pow", "(DD)D"); break;
+                case CompiledExpression.MIN: invoke(code, pool, "java/lang/Math", "min", "(DD)D"); break;
+                case CompiledExpression.MAX: invoke(code, pool, "java/lang/Math", "max", "(DD)D"); break;
+                case CompiledExpression.HYPOT: invoke(code, pool, "java/lang/Math", "hypot", "(DD)D"); break;
+                case CompiledExpression.LOG: invoke(code, pool, SUPPORT, "log", "(DD)D"); break;
+                case CompiledExpression.DISCARD:
+                    // a b -> b a b -> b
+                    code.write(DUP2_X2);
+                    code.write(POP2);
+                    code.write(POP2);
+                    break;
+                case CompiledExpression.ABS: invoke(code, pool, "java/lang/Math", "abs", "(D)D"); break;
+                case CompiledExpression.FLOOR: invoke(code, pool, "java/lang/Math", "floor", "(D)D"); break;
+                case CompiledExpression.CEIL: invoke(code, pool, "java/lang/Math", "ceil", "(D)D"); break;
+                case CompiledExpression.ROUND:
+                    invoke(code, pool, "java/lang/Math", "round", "(D)J");
+                    code.write(L2D);
+                    break;
+                case CompiledExpression.SIN: invoke(code, pool, "java/lang/Math", "sin", "(D)D"); break;
+                case CompiledExpression.COS: invoke(code, pool, "java/lang/Math", "cos", "(D)D"); break;
+                case CompiledExpression.TAN: invoke(code, pool, "java/lang/Math", "tan", "(D)D"); break;
+                case CompiledExpression.ASIN: invoke(code, pool, "java/lang/Math", "asin", "(D)D"); break;
+                case CompiledExpression.ACOS: invoke(code, pool, "java/lang/Math", "acos", "(D)D"); break;
+                case CompiledExpression.ATAN: invoke(code, pool, "java/lang/Math", "atan", "(D)D"); break;
+                case CompiledExpression.SQRT: invoke(code, pool, SUPPORT, "sqrt", "(D)D"); break;
+                case CompiledExpression.LG: invoke(code, pool, SUPPORT, "lg", "(D)D"); break;
+                case CompiledExpression.LN: invoke(code, pool, SUPPORT, "ln", "(D)D"); break;
+                default:
+                    // 新增的指令在这里支持之前一律解释执行
+                    return null;
+            }
+        }
+        code.write(DRETURN);
+        return code.toByteArray();
+    }
+
+    private static void invoke(ByteArrayOutputStream code, ConstantPool pool, String owner, String name,
+                               String descriptor) {
+        emitIndexed(code, INVOKESTATIC, pool.methodRef(owner, name, descriptor));
+    }
+
+    private static void emitIndexed(ByteArrayOutputStream code, int opcode, int index) {
+        code.write(opcode);
+        code.write(index >> 8);
+        code.write(index);
+    }
+
+    private static void emitInt(ByteArrayOutputStream code, int value) {
+        if (value <= 5) {
+            code.write(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(value);
+        } else {
+            code.write(SIPUSH);
+            code.write(value >> 8);
+            code.write(value);
+        }
+    }
+
+    // 常量池：相同的条目只写一次，double 占两个下标
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(entries);
+        private final Map<String, Integer> indices = new HashMap<>();
+        private int next = 1;
+
+        int size() {
+            return next;
+        }
+
+        int utf8(String value) {
+            return intern("U" + value, 1, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return intern("C" + internalName, 1, () -> {
+                out.writeByte(7);
+                out.writeShort(name);
+            });
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            int ownerIndex = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = intern("N" + name + descriptor, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return intern("M" + owner + "." + name + descriptor, 1, () -> {
+                out.writeByte(10);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int doubleConstant(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            return intern("D" + bits, 2, () -> {
+                out.writeByte(6);
+                out.writeLong(bits);
+            });
+        }
+
+        private int intern(String key, int width, Writer writer) {
+            Integer existing = indices.get(key);
+            if (existing != null) return existing;
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            int index = next;
+            next += width;
+            indices.put(key, index);
+            return index;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(next);
+            entries.writeTo(target);
+        }
+    }
+
+    private interface Writer {
+        void write() throws IOException;
+    }
+
+    private static final class Loader extends ClassLoader {
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
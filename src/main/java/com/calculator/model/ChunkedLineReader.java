@@ -0,0 +1,121 @@
+package com.calculator.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// 流式行读取器：用 FileChannel 按块读入一个复用的直接缓冲区，逐行解码，内存占用与文件大小无关。
+// 不做内存映射，关闭后文件立即释放，随后可以被替换或删除（Windows 上映射未回收前无法替换文件）
+final class ChunkedLineReader implements Closeable {
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int MIN_BUFFER_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    // 读模式：[position, limit) 为尚未消费的字节，下标 0 对应文件偏移 bufferStart
+    private ByteBuffer buffer;
+    private long bufferStart;
+    private long readPosition;
+    private byte[] lineBuffer = new byte[256];
+    private long lineNumber;
+
+    ChunkedLineReader(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    ChunkedLineReader(Path path, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.buffer = ByteBuffer.allocateDirect((int) Math.max(MIN_BUFFER_SIZE, Math.min(bufferSize, fileSize)));
+        buffer.limit(0);
+    }
+
+    // 读取下一行（不含行尾的 \n 或 \r\n），到达文件末尾时返回 null
+    String readLine() throws IOException {
+        int scanned = 0;
+        while (true) {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            for (int i = start + scanned; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    String line = decode(start, i);
+                    buffer.position(i + 1);
+                    return line;
+                }
+            }
+            scanned = limit - start;
+
+            if (readPosition >= fileSize) {
+                if (start == limit) return null;
+                // 最后一行没有换行符
+                String line = decode(start, limit);
+                buffer.position(limit);
+                return line;
+            }
+            fill();
+        }
+    }
+
+    // 保留未消费的字节并继续读入；单行超过缓冲区大小时扩大缓冲区
+    private void fill() throws IOException {
+        if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE - 8, buffer.capacity() * 2L));
+            larger.put(buffer);
+            larger.flip();
+            buffer = larger;
+        }
+        bufferStart += buffer.position();
+        buffer.compact();
+        if (fileSize - readPosition < buffer.remaining()) {
+            buffer.limit(buffer.position() + (int) (fileSize - readPosition));
+        }
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, readPosition);
+            if (n < 0) {
+                // 读取期间文件被截短
+                readPosition = fileSize;
+                break;
+            }
+            readPosition += n;
+        }
+        buffer.flip();
+    }
+
+    private String decode(int from, int to) {
+        int end = to;
+        if (end > from && buffer.get(end - 1) == '\r') end--;
+        int length = end - from;
+        if (lineBuffer.length < length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        int position = buffer.position();
+        buffer.position(from);
+        buffer.get(lineBuffer, 0, length);
+        buffer.position(position);
+        lineNumber++;
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // 已读取的字节数，用于报告进度
+    long getPosition() {
+        return bufferStart + buffer.position();
+    }
+
+    long getSize() {
+        return fileSize;
+    }
+
+    // 最近一次 readLine 返回的行号，从 1 开始
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
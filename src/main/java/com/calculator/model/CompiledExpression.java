@@ -0,0 +1,275 @@
+package com.calculator.model;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// 编译后的表达式：不可变的后缀指令序列，可重复求值而无需再次扫描字符串
+public final class CompiledExpression {
+    // 指令集
+    static final byte CONST = 0;
+    static final byte ADD = 1;
+    static final byte SUB = 2;
+    static final byte MUL = 3;
+    static final byte DIV = 4;
+    static final byte POW = 5;
+    static final byte ABS = 6;
+    static final byte FLOOR = 7;
+    static final byte CEIL = 8;
+    static final byte ROUND = 9;
+    static final byte SIN = 10;
+    static final byte COS = 11;
+    static final byte TAN = 12;
+    static final byte ASIN = 13;
+    static final byte ACOS = 14;
+    static final byte ATAN = 15;
+    static final byte SQRT = 16;
+    static final byte LG = 17;
+    static final byte LN = 18;
+    static final byte LOAD = 19;
+    // 复制栈顶，由优化器在强度削减时生成
+    static final byte DUP = 20;
+    // 双参数函数，与 ADD..POW 一样弹出两个操作数
+    static final byte MIN = 21;
+    static final byte MAX = 22;
+    static final byte HYPOT = 23;
+    static final byte LOG = 24;
+    // 丢弃左操作数、结果为右操作数：函数体没有用到、但求值可能出错的实参借此仍被求值
+    static final byte DISCARD = 25;
+
+    private static final double[] NO_SLOTS = new double[0];
+    // 每个线程复用一个求值栈，按需扩容；求值过程不会重入，因此无需按调用分配
+    private static final ThreadLocal<double[]> EVAL_STACK = ThreadLocal.withInitial(() -> new double[32]);
+    // 同一个编译结果解释执行达到该次数后生成字节码，小于 0 时只解释执行
+    private static final int JIT_THRESHOLD = Integer.getInteger("calculator.jit.threshold", 10_000);
+    // 计数抽样：平均每 JIT_SAMPLE_RATE 次求值才写一次共享的计数字段，每次计入 JIT_SAMPLE_RATE 次
+    private static final int JIT_SAMPLE_RATE = Math.max(1, Math.min(64, JIT_THRESHOLD));
+
+    private final String source;
+    private final String[] variableNames;
+    private final byte[] code;
+    private final int[] args;
+    private final double[] constants;
+    private final int maxStack;
+    // 抽样计数，允许并发丢失，只影响生成字节码的时机；尝试过生成（无论成败）后不再更新
+    private int invocations;
+    private volatile boolean jitAttempted;
+    private volatile JitSupport.Evaluator generated;
+
+    CompiledExpression(String source, String[] variableNames, byte[] code, int[] args,
+                       double[] constants, int maxStack) {
+        this.source = source;
+        this.variableNames = variableNames;
+        this.code = code;
+        this.args = args;
+        this.constants = constants;
+        this.maxStack = maxStack;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // 变量名按编译时给出的顺序对应 evaluate(double[]) 的槽位
+    public String[] getVariableNames() {
+        return variableNames.clone();
+    }
+
+    public int getVariableCount() {
+        return variableNames.length;
+    }
+
+    // 是否已生成字节码，之后的 evaluate 不再解释执行
+    public boolean isBytecodeCompiled() {
+        return generated != null;
+    }
+
+    // 生成失败时保持解释执行，且不再重试
+    private synchronized JitSupport.Evaluator compileBytecode() {
+        if (!jitAttempted) {
+            generated = BytecodeCompiler.compile(this);
+            jitAttempted = true;
+        }
+        return generated;
+    }
+
+    // 列式批量求值：columns[i] 为第 i 个变量的整列取值，结果写入 out
+    public void evaluateBatch(double[][] columns, double[] out) {
+        BatchEvaluator.evaluate(this, columns, out);
+    }
+
+    public double[] evaluateBatch(double[][] columns) {
+        double[] out = new double[BatchEvaluator.rowCount(this, columns)];
+        BatchEvaluator.evaluate(this, columns, out);
+        return out;
+    }
+
+    public double evaluate() {
+        return evaluate(NO_SLOTS);
+    }
+
+    public double evaluate(double[] slots) {
+        if (slots.length < variableNames.length) {
+            throw new IllegalArgumentException("变量个数不匹配: 需要 " + variableNames.length + " 个, 实际 " + slots.length + " 个");
+        }
+
+        JitSupport.Evaluator jit = generated;
+        if (jit != null) return jit.evaluate(slots);
+        if (JIT_THRESHOLD >= 0 && !jitAttempted && ThreadLocalRandom.current().nextInt(JIT_SAMPLE_RATE) == 0
+                && (invocations += JIT_SAMPLE_RATE) >= JIT_THRESHOLD) {
+            jit = compileBytecode();
+            if (jit != null) return jit.evaluate(slots);
+        }
+
+        double[] stack = EVAL_STACK.get();
+        if (stack.length < maxStack) {
+            stack = new double[Math.max(maxStack, stack.length * 2)];
+            EVAL_STACK.set(stack);
+        }
+        int sp = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            byte op = code[pc];
+            switch (op) {
+                case CONST:
+                    stack[sp++] = constants[args[pc]];
+                    break;
+                case LOAD:
+                    stack[sp++] = slots[args[pc]];
+                    break;
+                case DUP:
+                    stack[sp] = stack[sp - 1];
+                    sp++;
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] + stack[sp];
+                    break;
+                case SUB:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] - stack[sp];
+                    break;
+                case MUL:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] * stack[sp];
+                    break;
+                case DIV:
+                    sp--;
+                    stack[sp - 1] = divide(stack[sp - 1], stack[sp]);
+                    break;
+                case POW:
+                    sp--;
+                    stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+                    break;
+                case MIN:
+                case MAX:
+                case HYPOT:
+                case LOG:
+                case DISCARD:
+                    sp--;
+                    stack[sp - 1] = applyBinary(op, stack[sp - 1], stack[sp]);
+                    break;
+                default:
+                    stack[sp - 1] = applyFunction(op, stack[sp - 1]);
+                    break;
+            }
+        }
+
+        return stack[0];
+    }
+
+    byte[] code() {
+        return code;
+    }
+
+    int[] args() {
+        return args;
+    }
+
+    double[] constants() {
+        return constants;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    static double divide(double a, double b) {
+        if (b == 0) throw new ArithmeticException("除零错误");
+        return a / b;
+    }
+
+    static boolean isBinary(byte op) {
+        return (op >= ADD && op <= POW) || (op >= MIN && op <= DISCARD);
+    }
+
+    // 指令是否会对某些输入抛出异常
+    static boolean mayThrow(byte op) {
+        switch (op) {
+            case DIV:
+            case SQRT:
+            case LG:
+            case LN:
+            case LOG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // 程序中是否含有会对某些输入抛出异常的指令
+    boolean mayThrow() {
+        for (byte op : code) {
+            if (mayThrow(op)) return true;
+        }
+        return false;
+    }
+
+    static double applyBinary(byte op, double a, double b) {
+        switch (op) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return divide(a, b);
+            case POW: return Math.pow(a, b);
+            case MIN: return Math.min(a, b);
+            case MAX: return Math.max(a, b);
+            case HYPOT: return Math.hypot(a, b);
+            case LOG:
+                // log(底数, 真数)
+                if (b <= 0) throw new ArithmeticException("对数参数必须为正数");
+                if (a <= 0 || a == 1) throw new ArithmeticException("对数底数必须为正数且不等于 1");
+                return Math.log(b) / Math.log(a);
+            case DISCARD: return b;
+            default: throw new IllegalStateException("未知指令: " + op);
+        }
+    }
+
+    static double applyFunction(byte op, double value) {
+        switch (op) {
+            case ABS: return Math.abs(value);
+            case FLOOR: return Math.floor(value);
+            case CEIL: return Math.ceil(value);
+            case ROUND: return Math.round(value);
+            case SIN: return Math.sin(value);
+            case COS: return Math.cos(value);
+            case TAN: return Math.tan(value);
+            case ASIN: return Math.asin(value);
+            case ACOS: return Math.acos(value);
+            case ATAN: return Math.atan(value);
+            case SQRT:
+                if (value < 0) throw new ArithmeticException("负数的平方根");
+                return Math.sqrt(value);
+            case LG:
+                if (value <= 0) throw new ArithmeticException("对数参数必须为正数");
+                return Math.log10(value);
+            case LN:
+                if (value <= 0) throw new ArithmeticException("自然对数参数必须为正数");
+                return Math.log(value);
+            default: throw new IllegalStateException("未知指令: " + op);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,90 @@
+package com.calculator.model;
+
+import java.util.Arrays;
+
+// 边解析边求值的指令接收方，供只求值一次的表达式使用：不构建程序，每个线程复用一个实例，求值不分配内存。
+// 运算错误推迟到解析完成后再抛出，与先编译后求值时语法错误优先的行为一致
+final class DirectEvaluator implements ProgramSink {
+    private static final ThreadLocal<DirectEvaluator> CURRENT = ThreadLocal.withInitial(DirectEvaluator::new);
+
+    private double[] stack = new double[32];
+    private int depth;
+    private RuntimeException error;
+    // 解析器的运算符栈，同样按线程复用
+    private char[] operators = new char[32];
+
+    // 当前线程的实例，已按表达式长度准备好两个栈
+    static DirectEvaluator forLength(int length) {
+        DirectEvaluator evaluator = CURRENT.get();
+        evaluator.reset(length);
+        return evaluator;
+    }
+
+    // 每个字符至多产生一个操作数或一个运算符，按长度预留；只有展开用户函数时操作数栈才可能更深
+    private void reset(int length) {
+        if (stack.length < length + 1) stack = new double[Math.max(length + 1, stack.length * 2)];
+        if (operators.length < length) operators = new char[Math.max(length, operators.length * 2)];
+        depth = 0;
+        error = null;
+    }
+
+    char[] operators() {
+        return operators;
+    }
+
+    double result() {
+        if (error != null) throw error;
+        return stack[0];
+    }
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public void emitConstant(double value) {
+        if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = value;
+    }
+
+    @Override
+    public void emitLoad(int slot) {
+        throw new IllegalStateException("直接求值不支持变量");
+    }
+
+    @Override
+    public void emitBinary(byte op) {
+        depth--;
+        double a = stack[depth - 1];
+        double b = stack[depth];
+        switch (op) {
+            case CompiledExpression.ADD: stack[depth - 1] = a + b; break;
+            case CompiledExpression.SUB: stack[depth - 1] = a - b; break;
+            case CompiledExpression.MUL: stack[depth - 1] = a * b; break;
+            case CompiledExpression.POW: stack[depth - 1] = Math.pow(a, b); break;
+            default:
+                try {
+                    stack[depth - 1] = CompiledExpression.applyBinary(op, a, b);
+                } catch (ArithmeticException e) {
+                    fail(e);
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void emitFunction(byte op) {
+        try {
+            stack[depth - 1] = CompiledExpression.applyFunction(op, stack[depth - 1]);
+        } catch (ArithmeticException e) {
+            fail(e);
+        }
+    }
+
+    // 只保留第一个错误，之后的值已无意义
+    private void fail(ArithmeticException e) {
+        if (error == null) error = e;
+        stack[depth - 1] = Double.NaN;
+    }
+}
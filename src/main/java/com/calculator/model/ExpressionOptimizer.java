@@ -0,0 +1,188 @@
+package com.calculator.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// 后缀程序的优化：常量折叠、恒等式化简和平方的强度削减，结果与优化前逐位一致，错误也在同样的输入上抛出
+final class ExpressionOptimizer {
+    // 化简按树递归，超长的程序保持原样以免栈溢出
+    private static final int MAX_PROGRAM_LENGTH = 2048;
+
+    private ExpressionOptimizer() {
+    }
+
+    static CompiledExpression optimize(CompiledExpression expression) {
+        if (expression.code().length > MAX_PROGRAM_LENGTH) return expression;
+        Node root = simplify(toTree(expression));
+        ProgramBuilder program = new ProgramBuilder();
+        emit(root, program);
+        return program.build(expression.getSource(), expression.getVariableNames());
+    }
+
+    private static Node toTree(CompiledExpression expression) {
+        byte[] code = expression.code();
+        int[] args = expression.args();
+        double[] constants = expression.constants();
+        Deque<Node> stack = new ArrayDeque<>();
+
+        for (int pc = 0; pc < code.length; pc++) {
+            byte op = code[pc];
+            switch (op) {
+                case CompiledExpression.CONST:
+                    stack.push(Node.constant(constants[args[pc]]));
+                    break;
+                case CompiledExpression.LOAD:
+                    stack.push(new Node(op, args[pc], false, null, null));
+                    break;
+                case CompiledExpression.ADD:
+                case CompiledExpression.SUB:
+                case CompiledExpression.MUL:
+                case CompiledExpression.DIV:
+                case CompiledExpression.POW:
+                case CompiledExpression.MIN:
+                case CompiledExpression.MAX:
+                case CompiledExpression.HYPOT:
+                case CompiledExpression.LOG:
+                case CompiledExpression.DISCARD:
+                    Node right = stack.pop();
+                    stack.push(new Node(op, 0, false, stack.pop(), right));
+                    break;
+                case CompiledExpression.DUP:
+                    throw new IllegalStateException("程序已经优化过");
+                default:
+                    stack.push(new Node(op, 0, false, stack.pop(), null));
+                    break;
+            }
+        }
+        return stack.pop();
+    }
+
+    // 自底向上化简，子树先于父节点完成折叠
+    private static Node simplify(Node node) {
+        if (node.left == null) return node;
+
+        Node left = simplify(node.left);
+        if (node.right == null) {
+            if (left.isConstant()) {
+                try {
+                    return Node.constant(CompiledExpression.applyFunction(node.op, left.value));
+                } catch (ArithmeticException e) {
+                    // 保留原指令，错误留到求值时抛出
+                }
+            }
+            return new Node(node.op, 0, false, left, null);
+        }
+
+        Node right = simplify(node.right);
+        if (left.isConstant() && right.isConstant()) {
+            try {
+                return Node.constant(CompiledExpression.applyBinary(node.op, left.value, right.value));
+            } catch (ArithmeticException e) {
+                // 同上
+            }
+        }
+
+        switch (node.op) {
+            case CompiledExpression.ADD:
+                // x + 0 在 x 为 -0.0 时得到 +0.0，只有加 -0.0 才是恒等
+                if (right.isNegativeZero()) return left;
+                if (left.isNegativeZero()) return right;
+                break;
+            case CompiledExpression.SUB:
+                if (right.isPositiveZero()) return left;
+                break;
+            case CompiledExpression.MUL:
+                if (right.is(1)) return left;
+                if (left.is(1)) return right;
+                break;
+            case CompiledExpression.DIV:
+                if (right.is(1)) return left;
+                break;
+            case CompiledExpression.DISCARD:
+                // 左操作数只为可能抛出的错误而求值，确定不会出错时整个去掉
+                if (!mayThrow(left)) return right;
+                break;
+            case CompiledExpression.POW:
+                // pow(x, 1) == x，pow(x, 0) == 1 对 NaN 也成立；底数可能抛错时不能丢弃
+                if (right.is(1)) return left;
+                if (right.is(0) && !mayThrow(left)) return Node.constant(1);
+                // x*x 只舍入一次，与 pow(x, 2) 逐位相同；三次及以上的连乘会多次舍入，与 pow 可能差一个 ulp，因此不改写
+                if (right.is(2)) return new Node(CompiledExpression.POW, 0, true, left, null);
+                break;
+            default:
+                break;
+        }
+        return new Node(node.op, 0, false, left, right);
+    }
+
+    // 子树中是否含有会对某些输入抛出异常的指令
+    private static boolean mayThrow(Node node) {
+        if (node == null) return false;
+        return CompiledExpression.mayThrow(node.op) || mayThrow(node.left) || mayThrow(node.right);
+    }
+
+    private static void emit(Node node, ProgramBuilder program) {
+        switch (node.op) {
+            case CompiledExpression.CONST:
+                program.emitConstant(node.value);
+                return;
+            case CompiledExpression.LOAD:
+                program.emitLoad(node.slot);
+                return;
+            default:
+                break;
+        }
+
+        emit(node.left, program);
+        if (node.squared) {
+            // 底数只求值一次
+            program.emitDup();
+            program.emitBinary(CompiledExpression.MUL);
+        } else if (node.right != null) {
+            emit(node.right, program);
+            program.emitBinary(node.op);
+        } else {
+            program.emitFunction(node.op);
+        }
+    }
+
+    // 表达式树节点；squared 表示已削减为 left*left 的平方，此时没有 right
+    private static final class Node {
+        private final byte op;
+        private final int slot;
+        private final boolean squared;
+        private final Node left;
+        private final Node right;
+        private double value;
+
+        Node(byte op, int slot, boolean squared, Node left, Node right) {
+            this.op = op;
+            this.slot = slot;
+            this.squared = squared;
+            this.left = left;
+            this.right = right;
+        }
+
+        static Node constant(double value) {
+            Node node = new Node(CompiledExpression.CONST, 0, false, null, null);
+            node.value = value;
+            return node;
+        }
+
+        boolean isConstant() {
+            return op == CompiledExpression.CONST;
+        }
+
+        boolean is(double constant) {
+            return isConstant() && value == constant;
+        }
+
+        boolean isPositiveZero() {
+            return isConstant() && Double.doubleToRawLongBits(value) == 0L;
+        }
+
+        boolean isNegativeZero() {
+            return isConstant() && Double.doubleToRawLongBits(value) == Long.MIN_VALUE;
+        }
+    }
+}
@@ -1,95 +1,345 @@
 package com.calculator.model;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import com.calculator.metrics.Counter;
+import com.calculator.metrics.Metrics;
+import com.calculator.metrics.OperationTimer;
 
+import java.util.List;
+
+// 可由多个线程共享同一实例，用户函数表写时复制。词法分析直接在原字符串上按下标进行，自行跳过空白、忽略大小写，
+// 数字原地解析；evaluate 边解析边求值，不构建程序，也不产生垃圾
 public class ExpressionParser {
-    private final Map<String, Double> variables;
+    private static final String[] NO_SLOTS = new String[0];
+    // 内置常量
+    private static final String[] CONSTANT_NAMES = {"pi", "e"};
+    private static final double[] CONSTANT_VALUES = {Math.PI, Math.E};
+    // 内置函数在编译期解析为指令，单参数函数对应一元指令，双参数函数对应二元指令
+    private static final String[] FUNCTION_NAMES = {
+            "abs", "floor", "ceil", "round", "sin", "cos", "tan", "asin", "acos", "atan", "sqrt", "lg", "ln",
+            "min", "max", "pow", "log", "hypot"};
+    private static final byte[] FUNCTION_OPCODES = {
+            CompiledExpression.ABS, CompiledExpression.FLOOR, CompiledExpression.CEIL, CompiledExpression.ROUND,
+            CompiledExpression.SIN, CompiledExpression.COS, CompiledExpression.TAN, CompiledExpression.ASIN,
+            CompiledExpression.ACOS, CompiledExpression.ATAN, CompiledExpression.SQRT, CompiledExpression.LG,
+            CompiledExpression.LN, CompiledExpression.MIN, CompiledExpression.MAX, CompiledExpression.POW,
+            CompiledExpression.LOG, CompiledExpression.HYPOT};
+    // 用户函数展开后的程序长度上限，防止嵌套调用指数级膨胀
+    private static final int MAX_INLINED_LENGTH = 1 << 16;
+    // 2^53 以内的整数和 10^22 以内的 10 的幂都能用 double 精确表示
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final ResultCache resultCache;
+    private final FunctionRegistry functions = new FunctionRegistry();
+    private final OperationTimer evaluateTimer;
+    private final Counter evaluateErrors;
 
     public ExpressionParser() {
-        variables = new HashMap<>();
-        variables.put("pi", Math.PI);
-        variables.put("e", Math.E);
+        this(null);
+    }
+
+    // resultCache 为 null 时不缓存结果
+    public ExpressionParser(ResultCache resultCache) {
+        this(resultCache, Metrics.NOOP);
+    }
+
+    // metrics: 记录 evaluate 的耗时分布和失败次数
+    public ExpressionParser(ResultCache resultCache, Metrics metrics) {
+        this.resultCache = resultCache;
+        this.evaluateTimer = metrics.timer("parser.evaluate");
+        this.evaluateErrors = metrics.counter("parser.evaluate.errors");
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
     }
 
     public double evaluate(String expression) {
-        expression = expression.replaceAll("\\s+", "").toLowerCase();
-        return parseExpression(expression);
+        if (!evaluateTimer.isEnabled()) return evaluateCached(expression);
+
+        OperationTimer.Sample sample = evaluateTimer.start();
+        try {
+            return evaluateCached(expression);
+        } catch (RuntimeException e) {
+            evaluateErrors.increment();
+            throw e;
+        } finally {
+            sample.stop();
+        }
     }
 
-    private double parseExpression(String expr) {
+    private double evaluateCached(String expression) {
+        if (resultCache == null || !resultCache.isEnabled()) {
+            return evaluateDirect(expression);
+        }
+
+        // 变量目前都是常量，规范化后的表达式即可唯一确定结果
+        String key = normalize(expression);
+        Double cached = resultCache.get(key);
+        if (cached != null) return cached;
+
+        int version = functions.version();
+        double result = evaluateDirect(expression);
+        resultCache.put(key, result);
+        // 求值期间函数被重新定义时，刚写入的结果可能基于旧定义
+        if (functions.version() != version) resultCache.clear();
+        return result;
+    }
+
+    // 边解析边求值，解析用的两个栈按线程复用
+    private double evaluateDirect(String expression) {
+        DirectEvaluator evaluator = DirectEvaluator.forLength(expression.length());
+        compileExpression(expression, 0, expression.length(), NO_SLOTS, evaluator, evaluator.operators(), 0);
+        return evaluator.result();
+    }
 
-        Stack<Double> numbers = new Stack<>();
-        Stack<Character> ops = new Stack<>();
+    // 去掉空白并转为小写，等价于 replaceAll("\\s+", "").toLowerCase()；已是规范形式时不复制
+    private static String normalize(CharSequence expression) {
+        int i = 0;
+        while (i < expression.length() && !isWhitespace(expression.charAt(i))) i++;
+        if (i == expression.length()) return expression.toString().toLowerCase();
 
-        for (int i = 0; i < expr.length(); i++) {
+        StringBuilder sb = new StringBuilder(expression.length());
+        sb.append(expression, 0, i);
+        for (; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (isWhitespace(c)) continue;
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase();
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // 编译表达式，结果可反复求值而不再解析字符串
+    public CompiledExpression compile(String expression) {
+        return compile(expression, new String[0]);
+    }
+
+    // 带参数的编译：变量名在编译期解析为槽位下标，求值时通过 evaluate(double[]) 绑定
+    public CompiledExpression compile(String expression, String... variableNames) {
+        String[] slots = variableSlots(variableNames);
+
+        // 编译结果会被反复求值，值得做一次优化
+        ProgramBuilder program = new ProgramBuilder();
+        compileExpression(expression, 0, expression.length(), slots, program, new char[expression.length()], 0);
+        return ExpressionOptimizer.optimize(program.build(expression, slots));
+    }
+
+    // 定义或替换用户函数，例如 defineFunction("f(x, y) = x^2 + y")，返回函数名。函数体在定义时编译，
+    // 其中调用的其他用户函数按当时的定义展开；已编译的表达式不受之后的重新定义影响
+    public String defineFunction(String definition) {
+        int equals = definition.indexOf('=');
+        String head = equals < 0 ? "" : normalize(definition.substring(0, equals));
+        int open = head.indexOf('(');
+        if (open <= 0 || !head.endsWith(")")) throw new IllegalArgumentException("无效的函数定义: " + definition);
+
+        String name = head.substring(0, open);
+        if (!name.chars().allMatch(Character::isLetter)) throw new IllegalArgumentException("无效函数名: " + name);
+        if (indexOf(FUNCTION_NAMES, name, 0, name.length()) >= 0 || indexOf(CONSTANT_NAMES, name, 0, name.length()) >= 0) {
+            throw new IllegalArgumentException("不能重新定义内置函数或常量: " + name);
+        }
+        String[] slots = variableSlots(head.substring(open + 1, head.length() - 1).split(",", -1));
+
+        String body = definition.substring(equals + 1);
+        ProgramBuilder program = new ProgramBuilder();
+        compileExpression(body, 0, body.length(), slots, program, new char[body.length()], 0);
+        functions.define(new FunctionRegistry.UserFunction(name, slots, program.build(normalize(body), slots)));
+        if (resultCache != null) resultCache.clear();
+        return name;
+    }
+
+    public boolean removeFunction(String name) {
+        boolean removed = functions.remove(normalize(name));
+        if (removed && resultCache != null) resultCache.clear();
+        return removed;
+    }
+
+    // 按定义顺序返回用户函数的规范化定义，例如 "f(x,y)=x^2+y"
+    public List<String> getFunctionDefinitions() {
+        return functions.definitions();
+    }
+
+    private static String[] variableSlots(String[] variableNames) {
+        String[] slots = new String[variableNames.length];
+        for (int i = 0; i < variableNames.length; i++) {
+            String name = variableNames[i].trim().toLowerCase();
+            if (name.isEmpty() || !name.chars().allMatch(Character::isLetter)) {
+                throw new IllegalArgumentException("无效变量名: " + variableNames[i]);
+            }
+            for (int j = 0; j < i; j++) {
+                if (name.equals(slots[j])) throw new IllegalArgumentException("重复的变量名: " + variableNames[i]);
+            }
+            slots[i] = name;
+        }
+        return slots;
+    }
+
+    // 对整列输入批量求值，例如 evaluateBatch("x*y", new String[]{"x", "y"}, new double[][]{xs, ys})
+    public double[] evaluateBatch(String expression, String[] variableNames, double[][] columns) {
+        return compile(expression, variableNames).evaluateBatch(columns);
+    }
+
+    // 调度场算法：按求值顺序把后缀指令交给 program，[start, end) 内的子表达式必须恰好产生一个值。
+    // 空白在词法层面不存在（数字和标识符中间的空白也被跳过），ops[opBase..] 为本层可用的运算符栈
+    private void compileExpression(CharSequence expr, int start, int end, String[] slots, ProgramSink program,
+                                   char[] ops, int opBase) {
+        int base = program.depth();
+        int top = opBase;
+
+        for (int i = start; i < end; i++) {
             char c = expr.charAt(i);
+            if (isWhitespace(c)) continue;
 
             if (Character.isDigit(c) || c == '.') {
-                StringBuilder numBuilder = new StringBuilder();
-                while (i < expr.length() &&
-                        (Character.isDigit(expr.charAt(i)) || expr.charAt(i) == '.')) {
-                    numBuilder.append(expr.charAt(i++));
+                int numStart = i;
+                while (i < end && (Character.isDigit(expr.charAt(i)) || expr.charAt(i) == '.'
+                        || isWhitespace(expr.charAt(i)))) {
+                    i++;
                 }
+                program.emitConstant(parseNumber(expr, numStart, i));
                 i--;
-
-                double number = Double.parseDouble(numBuilder.toString());
-                numbers.push(number);
             }
 
             else if (Character.isLetter(c)) {
-                StringBuilder funcBuilder = new StringBuilder();
-                while (i < expr.length() && Character.isLetter(expr.charAt(i))) {
-                    funcBuilder.append(expr.charAt(i++));
+                int nameStart = i;
+                while (i < end && (Character.isLetter(expr.charAt(i)) || isWhitespace(expr.charAt(i)))) {
+                    i++;
                 }
+                int nameEnd = i;
                 i--;
 
-                String func = funcBuilder.toString();
-                if (variables.containsKey(func)) {
-                    numbers.push(variables.get(func));
-                } else if (i + 1 < expr.length() && expr.charAt(i + 1) == '(') {
-                    i++;
-                    int start = i + 1;
+                int slot = indexOf(slots, expr, nameStart, nameEnd);
+                int constant = slot >= 0 ? -1 : indexOf(CONSTANT_NAMES, expr, nameStart, nameEnd);
+                int next = skipWhitespace(expr, i + 1, end);
+                if (slot >= 0) {
+                    program.emitLoad(slot);
+                } else if (constant >= 0) {
+                    program.emitConstant(CONSTANT_VALUES[constant]);
+                } else if (next < end && expr.charAt(next) == '(') {
+                    int builtin = indexOf(FUNCTION_NAMES, expr, nameStart, nameEnd);
+                    FunctionRegistry.UserFunction function = builtin >= 0 ? null : userFunction(expr, nameStart, nameEnd);
+                    i = next;
+                    int argStart = i + 1;
                     int parenCount = 1;
-                    while (i + 1 < expr.length() && parenCount > 0) {
-                        i++;
+                    while ((next = skipWhitespace(expr, i + 1, end)) < end && parenCount > 0) {
+                        i = next;
                         if (expr.charAt(i) == '(') parenCount++;
                         if (expr.charAt(i) == ')') parenCount--;
                     }
-                    String arg = expr.substring(start, i);
-                    double value = parseExpression(arg);
-                    numbers.push(applyFunction(func, value));
+                    if (function != null) {
+                        inline(function, expr, argStart, i, slots, program, ops, top);
+                    } else {
+                        byte op = FUNCTION_OPCODES[builtin];
+                        compileArguments(FUNCTION_NAMES[builtin], CompiledExpression.isBinary(op) ? 2 : 1,
+                                expr, argStart, i, slots, program, null, ops, top);
+                        if (CompiledExpression.isBinary(op)) {
+                            program.emitBinary(op);
+                        } else {
+                            program.emitFunction(op);
+                        }
+                    }
                 } else {
-                    throw new IllegalArgumentException("未知标识符: " + func);
+                    throw new IllegalArgumentException("未知标识符: " + normalize(expr.subSequence(nameStart, nameEnd)));
                 }
             }
             else if (c == '(') {
-                ops.push(c);
+                ops[top++] = c;
             }
             else if (c == ')') {
-                while (ops.peek() != '(') {
-                    numbers.push(applyOp(ops.pop(), numbers.pop(), numbers.pop()));
+                while (top > opBase && ops[top - 1] != '(') {
+                    emitOperator(ops[--top], program, base);
                 }
-                ops.pop();
+                if (top == opBase) throw new IllegalArgumentException("括号不匹配");
+                top--;
             }
             else if (c == '+' || c == '-' || c == '*' || c == '/' || c == '^') {
-                while (!ops.empty() && hasPrecedence(c, ops.peek())) {
-                    numbers.push(applyOp(ops.pop(), numbers.pop(), numbers.pop()));
+                while (top > opBase && hasPrecedence(c, ops[top - 1])) {
+                    emitOperator(ops[--top], program, base);
                 }
-                ops.push(c);
+                ops[top++] = c;
             }
         }
 
-        while (!ops.empty()) {
-            numbers.push(applyOp(ops.pop(), numbers.pop(), numbers.pop()));
+        while (top > opBase) {
+            char op = ops[--top];
+            if (op == '(') throw new IllegalArgumentException("括号不匹配");
+            emitOperator(op, program, base);
         }
 
-        if (numbers.size() != 1) {
+        if (program.depth() != base + 1) {
             throw new IllegalArgumentException("无效表达式");
         }
+    }
+
+    private static int skipWhitespace(CharSequence expr, int from, int end) {
+        while (from < end && isWhitespace(expr.charAt(from))) from++;
+        return from;
+    }
+
+    // 原地解析 [from, to) 内的数字（跳过空白）。只有一个小数点、有效数字不超过 2^53 且小数不超过 22 位时，
+    // 一次精确的除法即得到与 Double.parseDouble 相同的正确舍入结果；其余情况（包括格式错误）交给 Double.parseDouble
+    private static double parseNumber(CharSequence expr, int from, int to) {
+        long mantissa = 0;
+        int scale = 0;
+        boolean point = false;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            char c = expr.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa > MAX_EXACT_MANTISSA / 10) return Double.parseDouble(normalize(expr.subSequence(from, to)));
+                mantissa = mantissa * 10 + (c - '0');
+                if (point) scale++;
+                digits = true;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if (!isWhitespace(c)) {
+                return Double.parseDouble(normalize(expr.subSequence(from, to)));
+            }
+        }
+        if (!digits || mantissa > MAX_EXACT_MANTISSA || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(normalize(expr.subSequence(from, to)));
+        }
+        return scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+    }
+
+    // [from, to) 去掉空白并转为小写后在 names 中的下标，不存在时返回 -1；绑定变量优先于内置常量
+    private static int indexOf(String[] names, CharSequence expr, int from, int to) {
+        for (int n = 0; n < names.length; n++) {
+            if (regionEquals(expr, from, to, names[n])) return n;
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(CharSequence expr, int from, int to, String name) {
+        int k = 0;
+        for (int i = from; i < to; i++) {
+            char c = expr.charAt(i);
+            if (isWhitespace(c)) continue;
+            if (k == name.length() || Character.toLowerCase(c) != name.charAt(k++)) return false;
+        }
+        return k == name.length();
+    }
 
-        return numbers.pop();
+    private void emitOperator(char op, ProgramSink program, int base) {
+        if (program.depth() - base < 2) {
+            throw new IllegalArgumentException("无效表达式");
+        }
+        switch (op) {
+            case '+': program.emitBinary(CompiledExpression.ADD); break;
+            case '-': program.emitBinary(CompiledExpression.SUB); break;
+            case '*': program.emitBinary(CompiledExpression.MUL); break;
+            case '/': program.emitBinary(CompiledExpression.DIV); break;
+            case '^': program.emitBinary(CompiledExpression.POW); break;
+            default: throw new IllegalArgumentException("未知运算符: " + op);
+        }
     }
 
     private boolean hasPrecedence(char op1, char op2) {
@@ -98,41 +348,106 @@ public class ExpressionParser {
         return op1 != '^' || op2 == '^';
     }
 
-    private double applyOp(char op, double b, double a) {
-        switch (op) {
-            case '+': return a + b;
-            case '-': return a - b;
-            case '*': return a * b;
-            case '/':
-                if (b == 0) throw new ArithmeticException("除零错误");
-                return a / b;
-            case '^': return Math.pow(a, b);
-            default: throw new IllegalArgumentException("未知运算符: " + op);
+    private FunctionRegistry.UserFunction userFunction(CharSequence expr, int from, int to) {
+        String name = normalize(expr.subSequence(from, to));
+        FunctionRegistry.UserFunction function = functions.get(name);
+        if (function == null) throw new UnsupportedOperationException("不支持的函数: " + name);
+        return function;
+    }
+
+    // 按顶层逗号把 [start, end) 分成 arity 个实参，依次编译到 program；separate 不为 null 时第 k 个实参单独编译到 separate[k]
+    private void compileArguments(String name, int arity, CharSequence expr, int start, int end, String[] slots,
+                                  ProgramSink program, ProgramBuilder[] separate, char[] ops, int opBase) {
+        // 缺少右括号时参数范围为空
+        if (end < start) end = start;
+        int count = 1;
+        int depth = 0;
+        for (int i = start; i < end; i++) {
+            char c = expr.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')') depth--;
+            else if (c == ',' && depth == 0) count++;
+        }
+        if (count != arity) {
+            throw new IllegalArgumentException("函数 " + name + " 需要 " + arity + " 个参数, 实际 " + count + " 个");
+        }
+        int argStart = start;
+        int k = 0;
+        depth = 0;
+        for (int i = start; i <= end; i++) {
+            if (i < end) {
+                char c = expr.charAt(i);
+                if (c == '(') depth++;
+                else if (c == ')') depth--;
+                if (c != ',' || depth != 0) continue;
+            }
+            if (separate != null) program = separate[k] = new ProgramBuilder();
+            compileExpression(expr, argStart, i, slots, program, ops, opBase);
+            argStart = i + 1;
+            k++;
         }
     }
 
-    private double applyFunction(String func, double value) {
-        switch (func) {
-            case "abs": return Math.abs(value);
-            case "floor": return Math.floor(value);
-            case "ceil": return Math.ceil(value);
-            case "round": return Math.round(value);
-            case "sin": return Math.sin(value);
-            case "cos": return Math.cos(value);
-            case "tan": return Math.tan(value);
-            case "asin": return Math.asin(value);
-            case "acos": return Math.acos(value);
-            case "atan": return Math.atan(value);
-            case "sqrt":
-                if (value < 0) throw new ArithmeticException("负数的平方根");
-                return Math.sqrt(value);
-            case "lg":
-                if (value <= 0) throw new ArithmeticException("对数参数必须为正数");
-                return Math.log10(value);
-            case "ln":
-                if (value <= 0) throw new ArithmeticException("自然对数参数必须为正数");
-                return Math.log(value);
-            default: throw new UnsupportedOperationException("不支持的函数: " + func);
-        }
-    }
-}
\ No newline at end of file
+    // 调用用户函数：实参各自编译，再把函数体中的形参替换为实参程序输出到 program，
+    // 等价于把实参代入公式后的表达式。函数体没有用到的实参如果可能出错，先求值再用 DISCARD 丢弃，
+    // 因此 f(x)=1 时 f(1/0) 与其他调用一样报告除零错误
+    private void inline(FunctionRegistry.UserFunction function, CharSequence expr, int start, int end,
+                        String[] slots, ProgramSink program, char[] ops, int opBase) {
+        CompiledExpression body = function.body();
+        ProgramBuilder[] builders = new ProgramBuilder[function.arity()];
+        compileArguments(function.name(), function.arity(), expr, start, end, slots, null, builders, ops, opBase);
+        CompiledExpression[] arguments = new CompiledExpression[builders.length];
+        for (int k = 0; k < builders.length; k++) {
+            arguments[k] = builders[k].build("", slots);
+        }
+
+        boolean[] used = new boolean[arguments.length];
+        long length = 0;
+        for (int pc = 0; pc < body.code().length; pc++) {
+            if (body.code()[pc] == CompiledExpression.LOAD) {
+                used[body.args()[pc]] = true;
+                length += arguments[body.args()[pc]].code().length;
+            } else {
+                length++;
+            }
+        }
+        int discarded = 0;
+        for (int k = 0; k < arguments.length; k++) {
+            if (used[k] || !arguments[k].mayThrow()) continue;
+            length += arguments[k].code().length + 1;
+            discarded++;
+        }
+        if (length > MAX_INLINED_LENGTH) throw new IllegalArgumentException("函数展开后表达式过长: " + function.name());
+
+        for (int k = 0; k < arguments.length; k++) {
+            if (!used[k] && arguments[k].mayThrow()) replay(arguments[k], null, program);
+        }
+        replay(body, arguments, program);
+        for (int k = 0; k < discarded; k++) {
+            program.emitBinary(CompiledExpression.DISCARD);
+        }
+    }
+
+    // 把程序重新输出到 program；arguments 不为 null 时 LOAD 替换为对应的实参程序
+    private static void replay(CompiledExpression source, CompiledExpression[] arguments, ProgramSink program) {
+        byte[] code = source.code();
+        int[] args = source.args();
+        double[] constants = source.constants();
+        for (int pc = 0; pc < code.length; pc++) {
+            byte op = code[pc];
+            if (op == CompiledExpression.CONST) {
+                program.emitConstant(constants[args[pc]]);
+            } else if (op == CompiledExpression.LOAD) {
+                if (arguments == null) {
+                    program.emitLoad(args[pc]);
+                } else {
+                    replay(arguments[args[pc]], null, program);
+                }
+            } else if (CompiledExpression.isBinary(op)) {
+                program.emitBinary(op);
+            } else {
+                program.emitFunction(op);
+            }
+        }
+    }
+}
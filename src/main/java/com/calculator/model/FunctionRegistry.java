@@ -0,0 +1,77 @@
+package com.calculator.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 用户定义函数表：函数体保存为以形参为变量的未优化程序，调用处在编译期代入实参展开，求值时不再查表。
+// 写时复制，读取不加锁；版本号在每次修改后递增，供结果缓存判断求值期间定义是否变过
+final class FunctionRegistry {
+    private volatile Map<String, UserFunction> functions = Collections.emptyMap();
+    private volatile int version;
+
+    UserFunction get(String name) {
+        return functions.get(name);
+    }
+
+    int version() {
+        return version;
+    }
+
+    synchronized void define(UserFunction function) {
+        Map<String, UserFunction> copy = new LinkedHashMap<>(functions);
+        copy.remove(function.name);
+        copy.put(function.name, function);
+        functions = copy;
+        version++;
+    }
+
+    synchronized boolean remove(String name) {
+        if (!functions.containsKey(name)) return false;
+        Map<String, UserFunction> copy = new LinkedHashMap<>(functions);
+        copy.remove(name);
+        functions = copy;
+        version++;
+        return true;
+    }
+
+    // 按定义顺序返回规范化后的定义文本
+    List<String> definitions() {
+        List<String> result = new ArrayList<>();
+        for (UserFunction function : functions.values()) {
+            result.add(function.toString());
+        }
+        return result;
+    }
+
+    static final class UserFunction {
+        private final String name;
+        private final String[] parameters;
+        private final CompiledExpression body;
+
+        UserFunction(String name, String[] parameters, CompiledExpression body) {
+            this.name = name;
+            this.parameters = parameters;
+            this.body = body;
+        }
+
+        String name() {
+            return name;
+        }
+
+        int arity() {
+            return parameters.length;
+        }
+
+        CompiledExpression body() {
+            return body;
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + String.join(",", parameters) + ")=" + body.getSource();
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.calculator.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+// 二进制历史文件：8 字节文件头之后是若干分段，每段为段头、定长记录表和表达式字符串池。
+// 结果按 IEEE 754 原样保存，读回时与写入前逐位相同；每段的记录表和字符串池各一次读取即可整段解码。
+// 日志追加时记录表按容量预留，之后的提交写入同一段的空位，只更新段头中的条数；新段的容量与已有记录数相同，
+// 因此逐条提交的文件也只有 O(log n) 个分段，打开时读取的段头数与之相同
+final class HistoryBinaryFormat implements HistoryEncoding {
+    static final int MAGIC = 0x43414C48; // "CALH"
+    // 版本 2 增加了可续写的分段；版本 1 的文件仍可读取，追加时升级为版本 2
+    static final int VERSION = 2;
+    static final int FILE_HEADER_SIZE = 8;
+    // 版本 1 的段头：魔数、记录数、字符串池字节数
+    private static final int SEGMENT_MAGIC_V1 = 0x5345474D; // "SEGM"
+    private static final int SEGMENT_HEADER_SIZE_V1 = 12;
+    // 版本 2 的段头：魔数、记录表容量、记录数、字符串池字节数
+    private static final int SEGMENT_MAGIC = 0x53454732; // "SEG2"
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    // 记录：时间戳 long、结果 double、表达式在字符串池中的偏移 int 和字节数 int
+    private static final int RECORD_SIZE = 24;
+    // 追加时新分段的容量范围
+    private static final int MIN_SEGMENT_CAPACITY = 1024;
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 18;
+
+    HistoryBinaryFormat() {
+    }
+
+    static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic, magic.position()) < 0) return false;
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    // 按顺序读取整个文件的全部记录
+    static void readAll(Path path, HistoryFormat.Sink target) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new Reader(channel).readAll(target);
+        }
+    }
+
+    @Override
+    public HistoryEncoding.Appender openAppender(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < FILE_HEADER_SIZE) {
+            // 空文件或文件头没有写完整
+            channel.truncate(0);
+            ByteArrayOutputStream header = new ByteArrayOutputStream(FILE_HEADER_SIZE);
+            writeHeader(header);
+            writeFully(channel, ByteBuffer.wrap(header.toByteArray()), 0);
+            return new SegmentAppender(channel, FILE_HEADER_SIZE, 0, null);
+        }
+
+        // 上次写入中断时截掉不完整的结尾
+        Reader reader = new Reader(channel);
+        long valid = reader.validLength();
+        if (valid < size) {
+            System.err.println("二进制历史文件末尾不完整，已截掉 " + (size - valid) + " 字节");
+            channel.truncate(valid);
+        }
+        if (reader.version < VERSION) {
+            ByteBuffer version = ByteBuffer.allocate(4);
+            version.putInt(0, VERSION);
+            writeFully(channel, version, 4);
+        }
+        return new SegmentAppender(channel, valid, reader.size(), reader);
+    }
+
+    @Override
+    public void writeHeader(ByteArrayOutputStream out) {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        out.write(header.array(), 0, FILE_HEADER_SIZE);
+    }
+
+    // 整段写出，容量等于记录数
+    @Override
+    public void encode(List<HistoryWriter.Entry> entries, ByteArrayOutputStream out) {
+        if (entries.isEmpty()) return;
+        byte[][] expressions = expressions(entries, 0, entries.size());
+        int poolSize = 0;
+        for (byte[] expression : expressions) poolSize += expression.length;
+
+        ByteBuffer segment = ByteBuffer.allocate(SEGMENT_HEADER_SIZE + RECORD_SIZE * expressions.length + poolSize);
+        segment.putInt(SEGMENT_MAGIC).putInt(expressions.length).putInt(expressions.length).putInt(poolSize);
+        putRecords(entries, 0, expressions, 0, segment);
+        for (byte[] expression : expressions) {
+            segment.put(expression);
+        }
+        out.write(segment.array(), 0, segment.position());
+    }
+
+    private static byte[][] expressions(List<HistoryWriter.Entry> entries, int from, int to) {
+        byte[][] expressions = new byte[to - from][];
+        for (int i = from; i < to; i++) {
+            expressions[i - from] = entries.get(i).expression().getBytes(StandardCharsets.UTF_8);
+        }
+        return expressions;
+    }
+
+    private static void putRecords(List<HistoryWriter.Entry> entries, int from, byte[][] expressions, int poolOffset,
+                                   ByteBuffer out) {
+        int offset = poolOffset;
+        for (int i = 0; i < expressions.length; i++) {
+            HistoryWriter.Entry entry = entries.get(from + i);
+            out.putLong(entry.timestamp())
+                    .putDouble(entry.result())
+                    .putInt(offset)
+                    .putInt(expressions[i].length);
+            offset += expressions[i].length;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // 续写最后一个未满的分段，写满后按已有记录数开新段。每次提交先写记录和字符串，最后更新段头中的条数，
+    // 中断时段头仍指向上一次完整的提交
+    private static final class SegmentAppender implements HistoryEncoding.Appender {
+        private final FileChannel channel;
+        private final ByteBuffer counts = ByteBuffer.allocate(8);
+        private int total;
+        private long segmentStart = -1;
+        private int capacity;
+        private int count;
+        private int poolSize;
+        private long end;
+        private final boolean fragmented;
+
+        SegmentAppender(FileChannel channel, long end, int total, Reader reader) {
+            this.channel = channel;
+            this.end = end;
+            this.total = total;
+            // 按容量倍增续写时分段数约为 log2(n)，明显更多说明来自旧版本的逐条提交
+            this.fragmented = reader != null
+                    && reader.segmentCount > 16 + 2 * (32 - Integer.numberOfLeadingZeros(total));
+            if (reader != null && reader.openSegmentStart >= 0) {
+                segmentStart = reader.openSegmentStart;
+                capacity = reader.openSegmentCapacity;
+                int last = reader.segmentCount - 1;
+                count = reader.segmentCounts[last];
+                poolSize = reader.poolSizes[last];
+            }
+        }
+
+        @Override
+        public boolean isFragmented() {
+            return fragmented;
+        }
+
+        private long poolStart() {
+            return segmentStart + SEGMENT_HEADER_SIZE + (long) RECORD_SIZE * capacity;
+        }
+
+        @Override
+        public void append(List<HistoryWriter.Entry> entries) throws IOException {
+            int from = 0;
+            while (from < entries.size()) {
+                if (segmentStart < 0 || count == capacity) startSegment();
+                int to = Math.min(entries.size(), from + capacity - count);
+                byte[][] expressions = expressions(entries, from, to);
+                int bytes = 0;
+                for (byte[] expression : expressions) bytes += expression.length;
+
+                ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * expressions.length);
+                putRecords(entries, from, expressions, poolSize, records);
+                records.flip();
+                writeFully(channel, records, segmentStart + SEGMENT_HEADER_SIZE + (long) RECORD_SIZE * count);
+                ByteBuffer pool = ByteBuffer.allocate(bytes);
+                for (byte[] expression : expressions) pool.put(expression);
+                pool.flip();
+                writeFully(channel, pool, poolStart() + poolSize);
+
+                count += expressions.length;
+                poolSize += bytes;
+                total += expressions.length;
+                counts.clear();
+                counts.putInt(count).putInt(poolSize).flip();
+                writeFully(channel, counts, segmentStart + 8);
+                end = poolStart() + poolSize;
+                from = to;
+            }
+        }
+
+        private void startSegment() throws IOException {
+            segmentStart = end;
+            capacity = Math.min(MAX_SEGMENT_CAPACITY, Math.max(MIN_SEGMENT_CAPACITY, total));
+            count = 0;
+            poolSize = 0;
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC).putInt(capacity).putInt(0).putInt(0).flip();
+            writeFully(channel, header, segmentStart);
+        }
+    }
+
+    // 打开时只读取各段的段头建立段目录，供整体读取和续写使用。
+    // 不持有 channel，由调用方负责关闭
+    static final class Reader {
+        private final FileChannel channel;
+        private final int version;
+        private long[] recordStarts = new long[16];
+        private long[] poolStarts = new long[16];
+        private int[] poolSizes = new int[16];
+        private int[] segmentCounts = new int[16];
+        private int segmentCount;
+        private int recordCount;
+        private long validLength;
+        // 最后一段为未写满的版本 2 分段时的段起点和容量，供追加续写
+        private long openSegmentStart = -1;
+        private int openSegmentCapacity;
+        // completeRecords 保留的记录在字符串池中的结尾
+        private int lastRecordEnd;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            readFully(header, 0, FILE_HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) throw new IOException("不是二进制历史文件");
+            version = header.getInt(4);
+            if (version < 1 || version > VERSION) throw new IOException("不支持的二进制历史文件版本: " + version);
+
+            long size = channel.size();
+            long position = FILE_HEADER_SIZE;
+            while (position + SEGMENT_HEADER_SIZE_V1 <= size) {
+                header.clear();
+                readFully(header, position, (int) Math.min(SEGMENT_HEADER_SIZE, size - position));
+                int magic = header.getInt(0);
+                int capacity, count, poolSize;
+                long recordStart;
+                if (magic == SEGMENT_MAGIC_V1) {
+                    count = capacity = header.getInt(4);
+                    poolSize = header.getInt(8);
+                    recordStart = position + SEGMENT_HEADER_SIZE_V1;
+                } else if (magic == SEGMENT_MAGIC && version >= 2 && position + SEGMENT_HEADER_SIZE <= size) {
+                    capacity = header.getInt(4);
+                    count = header.getInt(8);
+                    poolSize = header.getInt(12);
+                    recordStart = position + SEGMENT_HEADER_SIZE;
+                } else {
+                    break;
+                }
+                if (count < 0 || poolSize < 0 || capacity < count) break;
+
+                long poolStart = recordStart + (long) RECORD_SIZE * capacity;
+                if (poolStart + poolSize > size) {
+                    // 版本 1 的分段整段写入，不完整即作废；续写的分段保留其中完整的记录
+                    if (magic == SEGMENT_MAGIC_V1) break;
+                    count = completeRecords(recordStart, poolStart, count, size);
+                    if (count == 0) break;
+                    poolSize = lastRecordEnd;
+                }
+                addSegment(recordStart, poolStart, count, poolSize);
+                position = poolStart + poolSize;
+                if (magic == SEGMENT_MAGIC && count < capacity) {
+                    // 未写满的分段只能是最后一段
+                    openSegmentStart = recordStart - SEGMENT_HEADER_SIZE;
+                    openSegmentCapacity = capacity;
+                    break;
+                }
+            }
+            validLength = position;
+        }
+
+        // 段头中的条数可能先于数据落盘：只保留在文件范围内、字符串池偏移首尾相接的记录前缀
+        private int completeRecords(long recordStart, long poolStart, int count, long size) throws IOException {
+            lastRecordEnd = 0;
+            if (poolStart > size) return 0;
+            ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * count);
+            readFully(records, recordStart, records.capacity());
+            int complete = 0;
+            while (complete < count) {
+                int offset = records.getInt(RECORD_SIZE * complete + 16);
+                int length = records.getInt(RECORD_SIZE * complete + 20);
+                if (offset != lastRecordEnd || length < 0 || poolStart + offset + length > size) break;
+                lastRecordEnd = offset + length;
+                complete++;
+            }
+            return complete;
+        }
+
+        private void addSegment(long recordStart, long poolStart, int count, int poolSize) {
+            if (segmentCount == recordStarts.length) {
+                recordStarts = Arrays.copyOf(recordStarts, segmentCount * 2);
+                poolStarts = Arrays.copyOf(poolStarts, segmentCount * 2);
+                poolSizes = Arrays.copyOf(poolSizes, segmentCount * 2);
+                segmentCounts = Arrays.copyOf(segmentCounts, segmentCount * 2);
+            }
+            recordStarts[segmentCount] = recordStart;
+            poolStarts[segmentCount] = poolStart;
+            poolSizes[segmentCount] = poolSize;
+            segmentCounts[segmentCount] = count;
+            recordCount += count;
+            segmentCount++;
+        }
+
+        // 文件中完整分段的总长度，之后的字节属于中断的写入
+        long validLength() {
+            return validLength;
+        }
+
+        int size() {
+            return recordCount;
+        }
+
+        // 按段顺序读取全部记录，每段的记录表和字符串池各读取一次
+        void readAll(HistoryFormat.Sink target) throws IOException {
+            for (int s = 0; s < segmentCount; s++) {
+                int count = segmentCounts[s];
+                ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * count);
+                readFully(records, recordStarts[s], records.capacity());
+                ByteBuffer pool = ByteBuffer.allocate(poolSizes[s]);
+                readFully(pool, poolStarts[s], pool.capacity());
+
+                byte[] bytes = pool.array();
+                for (int i = 0; i < count; i++) {
+                    int at = RECORD_SIZE * i;
+                    String expression = new String(bytes, records.getInt(at + 16), records.getInt(at + 20),
+                            StandardCharsets.UTF_8);
+                    target.add(records.getLong(at), expression, records.getDouble(at + 8));
+                }
+            }
+        }
+
+        private void readFully(ByteBuffer buffer, long position, int length) throws IOException {
+            buffer.limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("二进制历史文件不完整");
+                }
+            }
+        }
+    }
+}
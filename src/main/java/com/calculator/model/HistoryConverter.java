@@ -0,0 +1,113 @@
+package com.calculator.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// 历史文件格式转换：输入按内容识别（二进制，或逐行的文本/CSV），输出按扩展名选择（.bin、.csv，其余为文本）。
+// 流式处理，不经过 HistoryManager，内存占用与文件大小无关
+public final class HistoryConverter {
+    private static final int CHUNK_ENTRIES = 4096;
+
+    private HistoryConverter() {
+    }
+
+    // 返回写出的记录数，无法解析的行跳过并在标准错误中汇总
+    public static int convert(String inputFile, String outputFile) throws IOException {
+        Path input = Paths.get(inputFile);
+        Path output = Paths.get(outputFile);
+        if (!Files.exists(input) || !Files.isRegularFile(input)) {
+            throw new IOException("文件不存在: " + inputFile);
+        }
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IOException("输入和输出不能是同一个文件: " + outputFile);
+        }
+
+        try (Output out = new Output(output)) {
+            if (HistoryBinaryFormat.isBinary(input)) {
+                HistoryBinaryFormat.readAll(input, out);
+            } else {
+                int skipped = 0;
+                try (ChunkedLineReader reader = new ChunkedLineReader(input)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.trim().isEmpty()) continue;
+                        if (!HistoryFormat.parseLine(line, out)
+                                && !(line.contains(",") && HistoryFormat.parseCsv(line, out))) {
+                            skipped++;
+                        }
+                    }
+                }
+                if (skipped > 0) {
+                    System.err.println("跳过 " + skipped + " 条无法解析的历史记录");
+                }
+            }
+            return out.count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 按块编码写出；CSV 只用于导出，不是日志编码，单独处理
+    private static final class Output implements HistoryFormat.Sink, Closeable {
+        private final OutputStream out;
+        private final HistoryEncoding encoding;
+        private final boolean csv;
+        private final List<HistoryWriter.Entry> chunk = new ArrayList<>(CHUNK_ENTRIES);
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        private int count;
+
+        Output(Path path) throws IOException {
+            String name = path.getFileName().toString().toLowerCase();
+            this.csv = name.endsWith(".csv");
+            this.encoding = name.endsWith(".bin") ? HistoryEncoding.BINARY : HistoryEncoding.TEXT;
+            this.out = Files.newOutputStream(path);
+            if (!csv) encoding.writeHeader(buffer);
+        }
+
+        @Override
+        public void add(long timestamp, String expression, double result) {
+            chunk.add(new HistoryWriter.Entry(timestamp, expression, result, null));
+            count++;
+            if (chunk.size() == CHUNK_ENTRIES) {
+                try {
+                    writeChunk();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            if (csv) {
+                for (HistoryWriter.Entry entry : chunk) {
+                    byte[] bytes = (HistoryFormat.formatCsv(entry.timestamp(), entry.expression(), entry.result())
+                            + "\n").getBytes(StandardCharsets.UTF_8);
+                    buffer.write(bytes, 0, bytes.length);
+                }
+            } else {
+                encoding.encode(chunk, buffer);
+            }
+            chunk.clear();
+            buffer.writeTo(out);
+            buffer.reset();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeChunk();
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.calculator.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// 历史文件的编码方式：文本行或二进制分段，由 HistoryJournal 用于追加和重写
+interface HistoryEncoding {
+    HistoryEncoding TEXT = new Text();
+    HistoryEncoding BINARY = new HistoryBinaryFormat();
+
+    // 打开已有文件准备追加：修复不完整的结尾，空文件写入文件头
+    Appender openAppender(FileChannel channel) throws IOException;
+
+    void writeHeader(ByteArrayOutputStream out);
+
+    // 把一组记录完整编码后写入 out，用于重写、导出和转换等整体生成文件的场合
+    void encode(List<HistoryWriter.Entry> entries, ByteArrayOutputStream out);
+
+    // 日志追加：每次调用把一组记录写入文件，整组作为一次提交
+    interface Appender {
+        void append(List<HistoryWriter.Entry> entries) throws IOException;
+
+        // 已有内容是否碎片过多（例如旧版本逐条提交产生的大量小分段），值得整体重写一次
+        default boolean isFragmented() {
+            return false;
+        }
+    }
+
+    // 已有内容的文件按文件头判断，空文件或新文件按扩展名 .bin 判断
+    static HistoryEncoding forPath(Path path) throws IOException {
+        if (Files.isRegularFile(path) && Files.size(path) > 0) {
+            return HistoryBinaryFormat.isBinary(path) ? BINARY : TEXT;
+        }
+        return path.getFileName().toString().toLowerCase().endsWith(".bin") ? BINARY : TEXT;
+    }
+
+    // 文本格式：每条记录一行，见 HistoryFormat.formatLine
+    final class Text implements HistoryEncoding {
+        private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+        private Text() {
+        }
+
+        @Override
+        public Appender openAppender(FileChannel channel) throws IOException {
+            // 旧文件末尾缺少换行时先补上，避免新记录接在最后一行后面
+            long size = channel.size();
+            channel.position(size);
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, size - 1);
+                if (last.get(0) != '\n') {
+                    ByteBuffer separator = ByteBuffer.wrap(LINE_SEPARATOR);
+                    while (separator.hasRemaining()) {
+                        channel.write(separator);
+                    }
+                }
+            }
+
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(4096);
+            return entries -> {
+                encode(entries, encoded);
+                ByteBuffer buffer = ByteBuffer.wrap(encoded.toByteArray());
+                encoded.reset();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            };
+        }
+
+        @Override
+        public void writeHeader(ByteArrayOutputStream out) {
+        }
+
+        @Override
+        public void encode(List<HistoryWriter.Entry> entries, ByteArrayOutputStream out) {
+            for (HistoryWriter.Entry entry : entries) {
+                byte[] bytes = entry.format().getBytes(StandardCharsets.UTF_8);
+                out.write(bytes, 0, bytes.length);
+                out.write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+            }
+        }
+    }
+}
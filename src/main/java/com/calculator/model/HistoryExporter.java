@@ -0,0 +1,197 @@
+package com.calculator.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+// 流式并行导出：记录按块并行编码到复用的缓冲区，一组块编码完成后交给写入线程用一次聚集写入按顺序写出，
+// 写入与下一组的编码重叠进行。gzip 时每块单独压缩为一个 gzip 成员，拼接后仍是合法的 gzip 文件
+final class HistoryExporter {
+    private static final int CHUNK_ENTRIES = 16384;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final HistoryStore.Snapshot snapshot;
+    private final int[] ids;
+    private final String format;
+    private final boolean gzip;
+
+    // ids 为要导出的记录编号（按导出顺序），null 表示快照中的全部记录；format 为 txt、csv 或 bin
+    HistoryExporter(HistoryStore.Snapshot snapshot, int[] ids, String format, boolean gzip) {
+        this.snapshot = snapshot;
+        this.ids = ids;
+        this.format = format.toLowerCase();
+        this.gzip = gzip;
+    }
+
+    // 返回导出的记录数；取消时留下不完整的文件
+    int export(Path path, ProgressListener listener) throws IOException {
+        int total = ids == null ? snapshot.size : ids.length;
+        int chunks = (total + CHUNK_ENTRIES - 1) / CHUNK_ENTRIES;
+        int slots = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        // 两组缓冲区交替使用：一组在写出时另一组用于编码
+        Buffer[][] groups = new Buffer[2][slots];
+        for (Buffer[] group : groups) {
+            for (int i = 0; i < slots; i++) group[i] = new Buffer();
+        }
+
+        ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "history-export-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Future<?> writing = null;
+            if ("bin".equals(format)) {
+                Buffer header = new Buffer();
+                HistoryEncoding.BINARY.writeHeader(header);
+                writing = io.submit(write(channel, new Buffer[]{compress(header)}, 1));
+            }
+
+            for (int first = 0, round = 0; first < chunks; first += slots, round++) {
+                Buffer[] buffers = groups[round & 1];
+                int count = Math.min(slots, chunks - first);
+                int base = first;
+                IntStream.range(0, count).parallel().forEach(slot -> {
+                    int from = (base + slot) * CHUNK_ENTRIES;
+                    encode(from, Math.min(total, from + CHUNK_ENTRIES), buffers[slot]);
+                });
+                await(writing);
+                writing = io.submit(write(channel, buffers, count));
+                if (first + count < chunks) {
+                    HistoryManager.reportProgress(listener, (long) (first + count) * CHUNK_ENTRIES, total);
+                }
+            }
+            await(writing);
+            HistoryManager.reportProgress(listener, total, total);
+        } finally {
+            io.shutdownNow();
+        }
+        return total;
+    }
+
+    private void encode(int from, int to, Buffer buffer) {
+        buffer.reset();
+        if ("bin".equals(format)) {
+            List<HistoryWriter.Entry> entries = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                int id = ids == null ? i : ids[i];
+                entries.add(new HistoryWriter.Entry(snapshot.timestamps[id], snapshot.expressions[id],
+                        snapshot.results[id], null));
+            }
+            HistoryEncoding.BINARY.encode(entries, buffer);
+        } else {
+            boolean csv = "csv".equals(format);
+            StringBuilder text = new StringBuilder((to - from) * 48);
+            // 同一秒内的记录共用格式化后的时间戳
+            long second = Long.MIN_VALUE;
+            String timestampText = null;
+            for (int i = from; i < to; i++) {
+                int id = ids == null ? i : ids[i];
+                long timestamp = snapshot.timestamps[id];
+                if (Math.floorDiv(timestamp, 1000) != second) {
+                    second = Math.floorDiv(timestamp, 1000);
+                    timestampText = HistoryFormat.formatTimestamp(timestamp);
+                }
+                String resultText = HistoryFormat.formatResult(snapshot.results[id]);
+                if (csv) {
+                    // CSV格式: 时间戳,表达式,结果
+                    HistoryFormat.appendCsv(text, timestampText, snapshot.expressions[id], resultText).append('\n');
+                } else {
+                    // 默认文本格式
+                    HistoryFormat.appendLine(text, timestampText, snapshot.expressions[id], resultText)
+                            .append(LINE_SEPARATOR);
+                }
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            buffer.write(bytes, 0, bytes.length);
+        }
+        if (gzip) buffer.compressed = compress(buffer);
+    }
+
+    // 单独压缩为一个完整的 gzip 成员
+    private Buffer compress(Buffer buffer) {
+        if (!gzip) return buffer;
+        Buffer compressed = buffer.compressed != null ? buffer.compressed : new Buffer();
+        compressed.reset();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed, 64 * 1024)) {
+            buffer.writeTo(out);
+        } catch (IOException e) {
+            // 写入内存缓冲区不会失败
+            throw new IllegalStateException(e);
+        }
+        return compressed;
+    }
+
+    private static Runnable write(FileChannel channel, Buffer[] buffers, int count) {
+        ByteBuffer[] views = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            Buffer buffer = buffers[i].compressed != null ? buffers[i].compressed : buffers[i];
+            views[i] = buffer.view();
+        }
+        return () -> {
+            try {
+                long remaining = 0;
+                for (ByteBuffer view : views) remaining += view.remaining();
+                while (remaining > 0) {
+                    remaining -= channel.write(views);
+                }
+            } catch (IOException e) {
+                throw new WriteFailure(e);
+            }
+        };
+    }
+
+    private static void await(Future<?> writing) throws IOException {
+        if (writing == null) return;
+        try {
+            writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("导出被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WriteFailure) throw ((WriteFailure) e.getCause()).getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // 可复用的输出缓冲区，写出时直接包装内部数组而不复制
+    private static final class Buffer extends ByteArrayOutputStream {
+        private Buffer compressed;
+
+        Buffer() {
+            super(CHUNK_ENTRIES * 48);
+        }
+
+        ByteBuffer view() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    private static final class WriteFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WriteFailure(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.calculator.model;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+// 历史记录的文本边界：文本行/CSV 与类型化字段之间的格式化和解析
+final class HistoryFormat {
+    static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZONE);
+    private static final int TIMESTAMP_LENGTH = 19;
+    private static final String SEPARATOR = " | ";
+    // 时间戳及其后的空格，d 表示数字位
+    private static final String TIMESTAMP_TEMPLATE = "dddd-dd-dd dd:dd:dd ";
+    private static final String TIMESTAMP_MIN_FILL = "0000-00-00 00:00:00";
+    private static final String TIMESTAMP_MAX_FILL = "9999-19-39 29:59:59";
+    private static final String EQUALS = " = ";
+
+    private HistoryFormat() {
+    }
+
+    // 解析结果的接收方，HistoryStore::add 即可作为 Sink
+    interface Sink {
+        void add(long timestamp, String expression, double result);
+    }
+
+    static String formatTimestamp(long epochMillis) {
+        return TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    // 等价于 String.format(Locale.ROOT, "%.6f", result)；整数结果走快速路径，不经过 Formatter
+    static String formatResult(double result) {
+        if (result == (long) result && Math.abs(result) < 1e15) {
+            if (result == 0 && Double.doubleToRawLongBits(result) != 0) return "-0.000000";
+            return (long) result + ".000000";
+        }
+        return String.format(Locale.ROOT, "%.6f", result);
+    }
+
+    // 文本格式: 时间戳 | 表达式 = 结果
+    static String formatLine(long epochMillis, String expression, double result) {
+        return formatLine(epochMillis, expression, formatResult(result));
+    }
+
+    static String formatLine(long epochMillis, String expression, String resultText) {
+        return appendLine(new StringBuilder(), formatTimestamp(epochMillis), expression, resultText).toString();
+    }
+
+    // 同 formatLine，直接追加到 sb；timestampText 为 formatTimestamp 的结果，便于调用方按秒复用
+    static StringBuilder appendLine(StringBuilder sb, String timestampText, String expression, String resultText) {
+        return sb.append(timestampText).append(SEPARATOR).append(expression).append(EQUALS).append(resultText);
+    }
+
+    // CSV格式: "时间戳","表达式",结果
+    static String formatCsv(long epochMillis, String expression, double result) {
+        return appendCsv(new StringBuilder(), formatTimestamp(epochMillis), expression, formatResult(result))
+                .toString();
+    }
+
+    static StringBuilder appendCsv(StringBuilder sb, String timestampText, String expression, String resultText) {
+        return sb.append('"').append(timestampText).append("\",\"").append(expression).append("\",")
+                .append(resultText);
+    }
+
+    // 解析 yyyy-MM-dd HH:mm:ss（本地时区），格式不符时返回 INVALID_TIMESTAMP
+    static long parseTimestamp(CharSequence text, int from) {
+        if (text.length() - from < TIMESTAMP_LENGTH) return INVALID_TIMESTAMP;
+        if (text.charAt(from + 4) != '-' || text.charAt(from + 7) != '-' || text.charAt(from + 10) != ' '
+                || text.charAt(from + 13) != ':' || text.charAt(from + 16) != ':') {
+            return INVALID_TIMESTAMP;
+        }
+
+        int year = digits(text, from, 4);
+        int month = digits(text, from + 5, 2);
+        int day = digits(text, from + 8, 2);
+        int hour = digits(text, from + 11, 2);
+        int minute = digits(text, from + 14, 2);
+        int second = digits(text, from + 17, 2);
+        if ((year | month | day | hour | minute | second) < 0) return INVALID_TIMESTAMP;
+
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second)
+                    .atZone(ZONE).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return INVALID_TIMESTAMP;
+        }
+    }
+
+    // 查询串能否落在文本行开头的时间戳区域内：-1 不能，0 只能作为时间戳前缀，1 可能出现在时间戳中间
+    static int timestampMatch(String query) {
+        int result = -1;
+        for (int offset = 0; offset + query.length() <= TIMESTAMP_TEMPLATE.length(); offset++) {
+            if (fitsTemplate(query, offset)) {
+                if (offset > 0) return 1;
+                result = 0;
+            }
+        }
+        return result;
+    }
+
+    private static boolean fitsTemplate(String query, int offset) {
+        for (int i = 0; i < query.length(); i++) {
+            char expected = TIMESTAMP_TEMPLATE.charAt(offset + i);
+            char c = query.charAt(i);
+            if (expected == 'd' ? (c < '0' || c > '9') : c != expected) return false;
+        }
+        return true;
+    }
+
+    // 时间戳前缀对应的时间范围 {起始毫秒, 结束毫秒（含）}，是精确范围的超集
+    static long[] timestampPrefixRange(String prefix) {
+        int length = Math.min(prefix.length(), TIMESTAMP_LENGTH);
+        String head = prefix.substring(0, length);
+        LocalDateTime min = clampedDateTime(head + TIMESTAMP_MIN_FILL.substring(length));
+        LocalDateTime max = clampedDateTime(head + TIMESTAMP_MAX_FILL.substring(length));
+        long from = ZonedDateTime.ofLocal(min, ZONE, null).withEarlierOffsetAtOverlap().toInstant().toEpochMilli();
+        long to = ZonedDateTime.ofLocal(max, ZONE, null).withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+        return new long[]{from, to + 999};
+    }
+
+    private static LocalDateTime clampedDateTime(String text) {
+        int year = digits(text, 0, 4);
+        int month = Math.max(1, Math.min(12, digits(text, 5, 2)));
+        int day = Math.max(1, Math.min(YearMonth.of(year, month).lengthOfMonth(), digits(text, 8, 2)));
+        int hour = Math.min(23, digits(text, 11, 2));
+        int minute = Math.min(59, digits(text, 14, 2));
+        int second = Math.min(59, digits(text, 17, 2));
+        return LocalDateTime.of(year, month, day, hour, minute, second);
+    }
+
+    private static int digits(CharSequence text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // 解析一行文本格式的记录并追加到 target，无法解析时返回 false
+    static boolean parseLine(String line, Sink target) {
+        long timestamp = parseTimestamp(line, 0);
+        if (timestamp == INVALID_TIMESTAMP || !line.startsWith(SEPARATOR, TIMESTAMP_LENGTH)) return false;
+
+        int exprStart = TIMESTAMP_LENGTH + SEPARATOR.length();
+        int eq = line.lastIndexOf(EQUALS);
+        if (eq <= exprStart) return false;
+
+        try {
+            double result = Double.parseDouble(line.substring(eq + EQUALS.length()).trim());
+            target.add(timestamp, line.substring(exprStart, eq), result);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // 解析一行 CSV 格式的记录并追加到 target，无法解析时返回 false
+    static boolean parseCsv(String line, Sink target) {
+        String[] parts = line.split(",", 3);
+        if (parts.length != 3) return false;
+
+        String timestampText = unquote(parts[0]);
+        long timestamp = parseTimestamp(timestampText, 0);
+        if (timestamp == INVALID_TIMESTAMP) return false;
+
+        try {
+            double result = Double.parseDouble(unquote(parts[2]).trim());
+            target.add(timestamp, unquote(parts[1]), result);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String unquote(String text) {
+        int start = text.startsWith("\"") ? 1 : 0;
+        int end = text.length() > start && text.endsWith("\"") ? text.length() - 1 : text.length();
+        return text.substring(start, end);
+    }
+}
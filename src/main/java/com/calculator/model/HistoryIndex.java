@@ -0,0 +1,210 @@
+package com.calculator.model;
+
+import java.util.*;
+
+// 历史记录的增量三元组索引：记录文本（小写）中每个长度为三的子串到包含它的记录编号。
+// 编号表按差值变长编码存放在字节数组中，三元组的个数只取决于字符集，每条记录只占几十个字节
+final class HistoryIndex {
+    private static final int GRAM = 3;
+    // 候选集已经比剩余的编号表小这么多倍时不再求交，多出的候选由调用方校验
+    private static final int SKIP_RATIO = 16;
+
+    // 开放寻址表：三个字符打包成的键到编号表，键为 0 表示空槽
+    private long[] keys = new long[256];
+    private Postings[] values = new Postings[256];
+    private int gramCount;
+    // 文本短于三元组的记录
+    private final Postings shortTexts = new Postings();
+    private int lastId = -1;
+
+    // 记录编号必须递增
+    void add(int id, String text) {
+        String lower = text.toLowerCase();
+        lastId = id;
+        if (lower.length() < GRAM) {
+            shortTexts.add(id);
+            return;
+        }
+        for (int i = 0; i + GRAM <= lower.length(); i++) {
+            gram(key(lower, i), true).add(id);
+        }
+    }
+
+    void clear() {
+        keys = new long[256];
+        values = new Postings[256];
+        gramCount = 0;
+        shortTexts.clear();
+        lastId = -1;
+    }
+
+    // 返回文本中可能包含 lowerQuery 的记录编号（升序），是精确结果的超集，调用方需逐条校验
+    int[] candidates(String lowerQuery) {
+        if (lowerQuery.isEmpty()) return null;
+        if (lowerQuery.length() < GRAM) return containingShort(lowerQuery);
+
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= lowerQuery.length(); i++) {
+            Postings postings = gram(key(lowerQuery, i), false);
+            if (postings == null) return new int[0];
+            if (!lists.contains(postings)) lists.add(postings);
+        }
+        // 从最短的编号表开始求交，候选已经足够少时跳过其余更长的表
+        lists.sort(Comparator.comparingInt(postings -> postings.size));
+        int[] result = lists.get(0).toArray();
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            Postings postings = lists.get(i);
+            if (postings.size > (long) result.length * SKIP_RATIO) break;
+            result = postings.intersect(result);
+        }
+        return result;
+    }
+
+    // 短于三元组的片段：合并键中包含它的全部三元组和短文本，三元组的个数只取决于字符集
+    private int[] containingShort(String fragment) {
+        boolean[] marked = new boolean[lastId + 1];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0 && gramText(keys[slot]).contains(fragment)) values[slot].mark(marked);
+        }
+        shortTexts.mark(marked);
+        int count = 0;
+        for (boolean m : marked) if (m) count++;
+        int[] result = new int[count];
+        int n = 0;
+        for (int id = 0; id < marked.length; id++) {
+            if (marked[id]) result[n++] = id;
+        }
+        return result;
+    }
+
+    private Postings gram(long key, boolean create) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        if (!create) return null;
+        Postings postings = new Postings();
+        keys[slot] = key;
+        values[slot] = postings;
+        if (++gramCount * 2 > keys.length) rehash();
+        return postings;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        Postings[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Postings[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    // 第 48 位置 1，保证键不为 0
+    private static long key(String text, int start) {
+        return 1L << 48 | (long) text.charAt(start) << 32 | (long) text.charAt(start + 1) << 16 | text.charAt(start + 2);
+    }
+
+    private static String gramText(long key) {
+        return new String(new char[]{(char) (key >>> 32), (char) (key >>> 16), (char) key});
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static int[] union(int[] a, int[] b) {
+        int[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        Arrays.sort(all);
+        int n = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (n == 0 || all[n - 1] != all[i]) all[n++] = all[i];
+        }
+        return Arrays.copyOf(all, n);
+    }
+
+    // 有序且去重的记录编号列表，按与前一个编号的差值以 7 位一组变长编码
+    static final class Postings {
+        private byte[] data = new byte[4];
+        private int length;
+        private int size;
+        private int last = -1;
+
+        void add(int id) {
+            if (id == last) return;
+            if (length + 5 > data.length) data = Arrays.copyOf(data, Math.max(length + 5, length + (length >> 1)));
+            int delta = id - last;
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            last = id;
+            size++;
+        }
+
+        void clear() {
+            data = new byte[4];
+            length = 0;
+            size = 0;
+            last = -1;
+        }
+
+        int[] toArray() {
+            int[] ids = new int[size];
+            int pos = 0, id = -1;
+            for (int i = 0; i < size; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                id += delta;
+                ids[i] = id;
+            }
+            return ids;
+        }
+
+        // 与升序数组求交，边解码边比较
+        int[] intersect(int[] sorted) {
+            int[] out = new int[Math.min(size, sorted.length)];
+            int pos = 0, id = -1, j = 0, n = 0;
+            for (int i = 0; i < size && j < sorted.length; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                id += delta;
+                while (j < sorted.length && sorted[j] < id) j++;
+                if (j < sorted.length && sorted[j] == id) out[n++] = sorted[j++];
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        void mark(boolean[] marked) {
+            int pos = 0, id = -1;
+            for (int i = 0; i < size; i++) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                id += delta;
+                marked[id] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.calculator.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 追加写入的历史日志：所有记录通过同一个 FileChannel 追加，按条数或时间成组提交；
+// 文件按 HistoryEncoding 编码，文本格式和二进制格式共用同一套提交逻辑
+final class HistoryJournal implements Closeable {
+    // 重写时每组编码的记录数，二进制格式下即每段的记录数
+    private static final int REWRITE_CHUNK_ENTRIES = 65536;
+
+    private final Path path;
+    private final HistoryEncoding encoding;
+    private final int flushEveryEntries;
+    private final ScheduledExecutorService flusher;
+    private final List<HistoryWriter.Entry> pending = new ArrayList<>();
+    private FileChannel channel;
+    private HistoryEncoding.Appender appender;
+
+    HistoryJournal(Path path, int flushEveryEntries, long flushIntervalMillis) throws IOException {
+        this(path, HistoryEncoding.forPath(path), flushEveryEntries, flushIntervalMillis);
+    }
+
+    HistoryJournal(Path path, HistoryEncoding encoding, int flushEveryEntries, long flushIntervalMillis)
+            throws IOException {
+        this.path = path;
+        this.encoding = encoding;
+        this.flushEveryEntries = Math.max(1, flushEveryEntries);
+        openForAppend();
+
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "history-journal-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly,
+                    flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    private void openForAppend() throws IOException {
+        FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            appender = encoding.openAppender(ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+        channel = ch;
+    }
+
+    synchronized boolean isFragmented() {
+        return appender.isFragmented();
+    }
+
+    synchronized void append(HistoryWriter.Entry entry) throws IOException {
+        pending.add(entry);
+        if (pending.size() >= flushEveryEntries) {
+            flush();
+        }
+    }
+
+    // 成批追加，整批只提交一次
+    synchronized void appendAll(Collection<HistoryWriter.Entry> entries) throws IOException {
+        pending.addAll(entries);
+        flush();
+    }
+
+    synchronized void flush() throws IOException {
+        if (pending.isEmpty()) return;
+        try {
+            appender.append(pending);
+        } finally {
+            pending.clear();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("无法写入历史日志: " + e.getMessage());
+        }
+    }
+
+    // 压缩：用给定内容整体替换日志文件，未提交的记录一并丢弃（调用方传入的是完整内容）。
+    // 临时文件写入并落盘后才关闭当前通道；任何一步失败都保留原文件和未提交的记录，日志仍可继续追加
+    synchronized void rewrite(Iterable<HistoryWriter.Entry> entries) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(64 * 1024);
+            List<HistoryWriter.Entry> group = new ArrayList<>();
+            encoding.writeHeader(chunk);
+            for (HistoryWriter.Entry entry : entries) {
+                group.add(entry);
+                if (group.size() == REWRITE_CHUNK_ENTRIES) {
+                    encoding.encode(group, chunk);
+                    group.clear();
+                    writeFully(out, chunk);
+                }
+            }
+            encoding.encode(group, chunk);
+            writeFully(out, chunk);
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+
+        boolean moved = false;
+        try {
+            channel.close();
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) deleteQuietly(temp);
+            openForAppend();
+        }
+        pending.clear();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("无法删除临时文件: " + file);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteArrayOutputStream chunk) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.toByteArray());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        chunk.reset();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (flusher != null) flusher.shutdown();
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,106 +1,247 @@
 package com.calculator.model;
 
+import com.calculator.metrics.Counter;
+import com.calculator.metrics.Metrics;
+import com.calculator.metrics.OperationTimer;
+
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
-import java.text.*;
 import java.util.*;
-import java.util.regex.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.*;
 
-public class HistoryManager {
+// 线程安全：内存中的历史由读写锁保护，写锁内只做数组追加和入队；
+// 格式化和磁盘写入由唯一的后台写入线程完成，队列顺序与内存顺序一致
+public class HistoryManager implements Closeable {
     private final String historyFile;
-    private List<String> historyCache = new ArrayList<>();
-    private boolean cacheDirty = true;
-    private static final SimpleDateFormat SDF = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    private static final Pattern HISTORY_PATTERN = Pattern.compile("(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}) \\| (.+) = (\\d+\\.?\\d*)");
+    private final HistoryStore historyCache = new HistoryStore();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private HistoryWriter writer;
+    private static final int BATCH_CHUNK_LINES = 4096;
+    public static final int DEFAULT_MAX_PENDING_WRITES = 65536;
+
+    private final OperationTimer loadTimer;
+    private final OperationTimer saveTimer;
+    private final OperationTimer batchTimer;
+    private final OperationTimer importTimer;
+    private final OperationTimer exportTimer;
+    private final Counter batchLines;
+    private final Counter batchErrors;
 
     public HistoryManager(String fileName) {
+        this(fileName, 1, 0);
+    }
+
+    // flushEveryEntries: 每累积多少条记录提交一次；flushIntervalMillis: 定时提交间隔，0 表示不定时
+    public HistoryManager(String fileName, int flushEveryEntries, long flushIntervalMillis) {
+        this(fileName, flushEveryEntries, flushIntervalMillis, DEFAULT_MAX_PENDING_WRITES);
+    }
+
+    // maxPendingWrites: 尚未落盘的记录达到该数量时，保存操作阻塞等待写入线程追上
+    public HistoryManager(String fileName, int flushEveryEntries, long flushIntervalMillis, int maxPendingWrites) {
+        this(fileName, flushEveryEntries, flushIntervalMillis, maxPendingWrites, Metrics.NOOP);
+    }
+
+    // metrics: 记录加载、保存、批量求值、导入导出和日志写入的耗时与计数
+    public HistoryManager(String fileName, int flushEveryEntries, long flushIntervalMillis, int maxPendingWrites,
+                          Metrics metrics) {
         this.historyFile = fileName;
+        loadTimer = metrics.timer("history.load");
+        saveTimer = metrics.timer("history.save");
+        batchTimer = metrics.timer("history.batch");
+        importTimer = metrics.timer("history.import");
+        exportTimer = metrics.timer("history.export");
+        batchLines = metrics.counter("history.batch.lines");
+        batchErrors = metrics.counter("history.batch.errors");
+
+        OperationTimer.Sample sample = loadTimer.start();
         loadHistoryToCache();
+        sample.stop();
+        try {
+            HistoryJournal journal = new HistoryJournal(Paths.get(historyFile), flushEveryEntries, flushIntervalMillis);
+            writer = new HistoryWriter(journal, maxPendingWrites, metrics);
+            if (journal.isFragmented()) compact();
+        } catch (IOException e) {
+            System.err.println("无法打开历史记录文件: " + e.getMessage());
+        }
     }
 
     // 加载历史记录到缓存
     private void loadHistoryToCache() {
+        historyCache.clear();
         Path path = Paths.get(historyFile);
         if (!Files.exists(path) || !Files.isRegularFile(path)) {
-            historyCache.clear();
-            cacheDirty = false;
             return;
         }
 
+        int skipped = 0;
         try {
-            historyCache = Files.readAllLines(path);
-            cacheDirty = false;
+            if (HistoryBinaryFormat.isBinary(path)) {
+                HistoryBinaryFormat.readAll(path, historyCache::add);
+            } else {
+                skipped = readLines(path);
+            }
         } catch (IOException e) {
             System.err.println("无法加载历史记录: " + e.getMessage());
             historyCache.clear();
         }
+        if (skipped > 0) {
+            System.err.println("跳过 " + skipped + " 条无法解析的历史记录");
+        }
     }
 
-    // 保存缓存到文件
-    private void saveCacheToFile() {
-        if (!cacheDirty) return;
-
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(historyFile))) {
-            for (String entry : historyCache) {
-                writer.write(entry);
-                writer.newLine();
+    private int readLines(Path path) throws IOException {
+        int skipped = 0;
+        try (ChunkedLineReader reader = new ChunkedLineReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                if (!HistoryFormat.parseLine(line, historyCache::add)) skipped++;
             }
-            cacheDirty = false;
+        }
+        return skipped;
+    }
+
+    // 压缩：用内存中的完整历史重写文件
+    public void compact() {
+        if (writer == null) return;
+        lock.writeLock().lock();
+        try {
+            writer.rewrite(historyCache.snapshotEntries());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 等待此前保存的记录全部写入文件
+    public void flush() {
+        if (writer == null) return;
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
         } catch (IOException e) {
             System.err.println("无法保存历史记录: " + e.getMessage());
         }
     }
 
-    // 保存历史记录
+    // 尚未写入文件的记录数
+    public int getPendingWrites() {
+        return writer == null ? 0 : writer.getPending();
+    }
+
+    // 写入线程是否已积压到上限，此时保存操作会阻塞
+    public boolean isBackedUp() {
+        return writer != null && writer.isBackedUp();
+    }
+
+    // 保存历史记录，可从多个线程并发调用
     public void saveHistory(String expression, double result) {
-        String timestamp = SDF.format(new Date());
-        String resultStr = String.format("%.6f", result);
-        String historyEntry = timestamp + " | " + expression + " = " + resultStr;
+        saveHistory(expression, result, -1);
+    }
+
+    // 保存历史记录，同时记录本次求值耗时（纳秒，负数表示不记录）
+    public void saveHistory(String expression, double result, long latencyNanos) {
+        OperationTimer.Sample sample = saveTimer.start();
+        try {
+            append(expression, result, latencyNanos, true);
+        } finally {
+            sample.stop();
+        }
+    }
+
+    // 不等待写入线程的保存，供不能阻塞的调用方（如网络事件循环、界面线程）使用；批量调用方需先检查 isBackedUp 自行施加背压
+    public void offerHistory(String expression, double result, long latencyNanos) {
+        OperationTimer.Sample sample = saveTimer.start();
+        try {
+            append(expression, result, latencyNanos, false);
+        } finally {
+            sample.stop();
+        }
+    }
 
-        historyCache.add(historyEntry);
-        cacheDirty = true;
-        saveCacheToFile();
+    private void append(String expression, double result, long latencyNanos, boolean awaitCapacity) {
+        String resultText = HistoryFormat.formatResult(result);
+        if (writer != null && awaitCapacity) writer.awaitCapacity();
+
+        lock.writeLock().lock();
+        try {
+            // 时间戳在锁内取得，保证内存和文件中的记录按时间先后排列
+            long timestamp = System.currentTimeMillis();
+            historyCache.add(timestamp, expression, result, resultText);
+            if (latencyNanos >= 0) historyCache.stats().recordLatency(latencyNanos);
+            if (writer != null) writer.append(timestamp, expression, result, resultText);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    // 获取历史记录
+    // 获取最近的 10 条历史记录，最新的在前
     public String getHistory() {
-        return getHistory(10, null, false);
+        return getHistory(10, null, true);
     }
 
-    // 增强版获取历史记录
+    // 增强版获取历史记录；reverseOrder 为 true 时最新的在前，否则最早的在前
     public String getHistory(int maxEntries, String filter, boolean reverseOrder) {
-        if (cacheDirty) loadHistoryToCache();
+        return getHistory(0, maxEntries, filter, reverseOrder);
+    }
+
+    // 分页获取历史记录：跳过排在前面的 offset 条匹配记录。从两端按时间顺序取，无过滤时代价只与页大小有关
+    public String getHistory(int offset, int maxEntries, String filter, boolean reverseOrder) {
+        lock.readLock().lock();
+        try {
+            return formatHistory(offset, maxEntries, filter, reverseOrder);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
+    private String formatHistory(int offset, int maxEntries, String filter, boolean reverseOrder) {
         if (historyCache.isEmpty()) {
             return "暂无历史记录";
         }
 
-        Stream<String> stream = historyCache.stream();
-
-        // 应用过滤
+        // 应用过滤：先用索引缩小候选范围并按时间排列，再逐条校验
+        String searchTerm = null;
+        int[] ids = null;
+        int total = historyCache.size();
         if (filter != null && !filter.trim().isEmpty()) {
-            String searchTerm = filter.toLowerCase();
-            stream = stream.filter(entry -> entry.toLowerCase().contains(searchTerm));
+            searchTerm = filter.toLowerCase();
+            int[] candidates = historyCache.search(searchTerm);
+            if (candidates != null) {
+                ids = historyCache.chronological(candidates);
+                total = ids.length;
+            }
         }
 
-        // 应用排序
-        if (reverseOrder) {
-            stream = stream.sorted(Comparator.reverseOrder());
+        // 按时间顺序从一端取，凑满一页即停止；无过滤时直接从页首开始
+        List<String> displayList = new ArrayList<>(Math.min(Math.max(maxEntries, 0), total));
+        int start = searchTerm == null ? Math.max(offset, 0) : 0;
+        int skipped = start;
+        for (int k = start; k < total && displayList.size() < maxEntries; k++) {
+            int rank = reverseOrder ? total - 1 - k : k;
+            String entry = historyCache.format(ids == null ? historyCache.chronologicalId(rank) : ids[rank]);
+            if (searchTerm != null && !entry.toLowerCase().contains(searchTerm)) continue;
+            if (skipped++ < offset) continue;
+            displayList.add(entry);
         }
 
-        // 限制条目数量
-        List<String> displayList = stream
-                .limit(maxEntries)
-                .collect(Collectors.toList());
-
         if (displayList.isEmpty()) {
             return "未找到匹配的历史记录";
         }
 
         StringBuilder history = new StringBuilder();
-        history.append("===== 历史记录 (显示 ").append(displayList.size())
-                .append("/").append(historyCache.size()).append(") =====\n");
+        history.append("===== 历史记录 (显示 ");
+        if (offset > 0) history.append(offset + 1).append("-").append(offset + displayList.size());
+        else history.append(displayList.size());
+        history.append("/").append(historyCache.size()).append(") =====\n");
 
         for (String entry : displayList) {
             history.append(entry).append("\n");
@@ -109,124 +250,310 @@ public class HistoryManager {
         return history.toString();
     }
 
-    // 清除历史记录
-    public void clearHistory() {
-        historyCache.clear();
-        cacheDirty = true;
-        saveCacheToFile();
+    // 按时间范围获取历史记录（毫秒时间戳，闭区间），按时间先后排列
+    public String getHistory(long fromMillis, long toMillis, int maxEntries) {
+        lock.readLock().lock();
+        try {
+            return formatHistory(fromMillis, toMillis, maxEntries);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String formatHistory(long fromMillis, long toMillis, int maxEntries) {
+        if (historyCache.isEmpty()) {
+            return "暂无历史记录";
+        }
+
+        int[] ids = historyCache.rangeByTime(fromMillis, toMillis);
+        if (ids.length == 0) {
+            return "未找到匹配的历史记录";
+        }
+
+        int count = Math.min(ids.length, maxEntries);
+        StringBuilder history = new StringBuilder();
+        history.append("===== 历史记录 (显示 ").append(count)
+                .append("/").append(historyCache.size()).append(") =====\n");
+        for (int i = 0; i < count; i++) {
+            history.append(historyCache.format(ids[i])).append("\n");
+        }
+
+        return history.toString();
+    }
+
+    // 清除历史记录，等待文件重写完成；重写失败时抛出异常，此时文件中的记录仍在，下次启动会重新加载
+    public void clearHistory() throws IOException {
+        HistoryWriter.Rewrite rewrite = null;
+        lock.writeLock().lock();
+        try {
+            historyCache.clear();
+            if (writer != null) rewrite = writer.rewrite(Collections.emptyList());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // 在锁外等待，写入线程积压时不阻塞其他读写
+        if (rewrite != null) rewrite.await();
     }
 
-    // 从文件导入表达式并计算
-    public int processExpressionFile(String inputFilePath, ExpressionParser parser) throws IOException {
+    // 从文件导入表达式并计算：流式读取，按块并行求值，结果按输入顺序成批写入历史
+    public BatchResult processExpressionFile(String inputFilePath, ExpressionParser parser) throws IOException {
+        return processExpressionFile(inputFilePath, parser, ProgressListener.NONE);
+    }
+
+    // 同上，每处理完一块报告一次字节进度；取消时已处理的块保留在历史中
+    public BatchResult processExpressionFile(String inputFilePath, ExpressionParser parser,
+                                             ProgressListener listener) throws IOException {
+        OperationTimer.Sample sample = batchTimer.start();
+        try {
+            return evaluateFile(inputFilePath, parser, listener);
+        } finally {
+            sample.stop();
+        }
+    }
+
+    private BatchResult evaluateFile(String inputFilePath, ExpressionParser parser,
+                                     ProgressListener listener) throws IOException {
         Path path = Paths.get(inputFilePath);
         if (!Files.exists(path) || !Files.isRegularFile(path)) {
             throw new IOException("文件不存在: " + inputFilePath);
         }
 
-        List<String> expressions = Files.readAllLines(path);
-        for (String expression : expressions) {
-            String expr = expression.trim();
-            if (expr.isEmpty()) continue;
+        BatchResult batch = new BatchResult();
+        List<String> chunk = new ArrayList<>(BATCH_CHUNK_LINES);
+        int[] lineNumbers = new int[BATCH_CHUNK_LINES];
+
+        try (ChunkedLineReader reader = new ChunkedLineReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int lineNumber = (int) reader.getLineNumber();
+                String expr = line.trim();
+                if (expr.isEmpty()) continue;
+
+                lineNumbers[chunk.size()] = lineNumber;
+                chunk.add(expr);
+                if (chunk.size() == BATCH_CHUNK_LINES) {
+                    evaluateChunk(chunk, lineNumbers, parser, batch, listener);
+                    chunk.clear();
+                    reportProgress(listener, reader.getPosition(), reader.getSize());
+                }
+            }
+            evaluateChunk(chunk, lineNumbers, parser, batch, listener);
+            reportProgress(listener, reader.getSize(), reader.getSize());
+        }
+        return batch;
+    }
+
+    static void reportProgress(ProgressListener listener, long done, long total) {
+        listener.onProgress(done, total);
+        if (listener.isCancelled()) throw new CancellationException("操作已取消");
+    }
+
+    private void evaluateChunk(List<String> chunk, int[] lineNumbers, ExpressionParser parser, BatchResult batch,
+                               ProgressListener listener) {
+        int size = chunk.size();
+        if (size == 0) return;
 
+        double[] results = new double[size];
+        long[] latencies = new long[size];
+        String[] errors = new String[size];
+        IntStream.range(0, size).parallel().forEach(i -> {
             try {
-                double result = parser.evaluate(expr);
-                saveHistory(expr, result);
+                long start = System.nanoTime();
+                results[i] = parser.evaluate(chunk.get(i));
+                latencies[i] = System.nanoTime() - start;
             } catch (Exception e) {
-                System.err.println("计算表达式 '" + expr + "' 时出错: " + e.getMessage());
+                errors[i] = String.valueOf(e.getMessage());
+            }
+        });
+
+        String[] resultTexts = new String[size];
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                System.err.println("第 " + lineNumbers[i] + " 行计算表达式 '" + chunk.get(i) + "' 时出错: " + errors[i]);
+                listener.onLineError(batch.addFailure(lineNumbers[i], chunk.get(i), errors[i]));
+            } else {
+                resultTexts[i] = HistoryFormat.formatResult(results[i]);
+            }
+        }
+
+        if (writer != null) writer.awaitCapacity();
+        List<HistoryWriter.Entry> entries = new ArrayList<>(size);
+        lock.writeLock().lock();
+        try {
+            long timestamp = System.currentTimeMillis();
+            for (int i = 0; i < size; i++) {
+                if (resultTexts[i] == null) continue;
+                historyCache.add(timestamp, chunk.get(i), results[i], resultTexts[i]);
+                historyCache.stats().recordLatency(latencies[i]);
+                entries.add(new HistoryWriter.Entry(timestamp, chunk.get(i), results[i], resultTexts[i]));
             }
+            if (writer != null) writer.appendAll(entries);
+        } finally {
+            lock.writeLock().unlock();
         }
-        return 0;
+        batch.addSuccesses(entries.size());
+        batchLines.add(size);
+        batchErrors.add(size - entries.size());
     }
 
     // 导出历史记录到文件
     public void exportHistory(String outputFilePath, String format) throws IOException {
-        if (cacheDirty) loadHistoryToCache();
-
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFilePath))) {
-            for (String entry : historyCache) {
-                if ("csv".equalsIgnoreCase(format)) {
-                    // CSV格式: 时间戳,表达式,结果
-                    Matcher m = HISTORY_PATTERN.matcher(entry);
-                    if (m.find()) {
-                        writer.write(String.format("\"%s\",\"%s\",%s\n",
-                                m.group(1), m.group(2), m.group(3)));
-                    }
-                } else {
-                    // 默认文本格式
-                    writer.write(entry);
-                    writer.newLine();
-                }
+        exportHistory(outputFilePath, format, ProgressListener.NONE);
+    }
+
+    // 同上，按已写出的记录数报告进度；取消时留下不完整的文件
+    public void exportHistory(String outputFilePath, String format, ProgressListener listener) throws IOException {
+        exportHistory(outputFilePath, format, Long.MIN_VALUE, Long.MAX_VALUE, listener);
+    }
+
+    // 只导出时间戳落在 [fromMillis, toMillis] 内的记录，按时间先后排列；
+    // format 为 txt、csv 或 bin，输出文件名以 .gz 结尾时压缩为 gzip
+    public void exportHistory(String outputFilePath, String format, long fromMillis, long toMillis,
+                              ProgressListener listener) throws IOException {
+        OperationTimer.Sample sample = exportTimer.start();
+        try {
+            writeHistory(outputFilePath, format, fromMillis, toMillis, listener);
+        } finally {
+            sample.stop();
+        }
+    }
+
+    // 锁内只取快照和编号，格式化和写盘都在锁外进行，导出期间保存不受阻塞
+    private void writeHistory(String outputFilePath, String format, long fromMillis, long toMillis,
+                              ProgressListener listener) throws IOException {
+        HistoryStore.Snapshot snapshot;
+        int[] ids = null;
+        lock.readLock().lock();
+        try {
+            snapshot = historyCache.snapshot();
+            if (fromMillis != Long.MIN_VALUE || toMillis != Long.MAX_VALUE) {
+                ids = historyCache.rangeByTime(fromMillis, toMillis);
             }
+        } finally {
+            lock.readLock().unlock();
         }
+
+        Path path = Paths.get(outputFilePath);
+        boolean gzip = path.getFileName().toString().toLowerCase().endsWith(".gz");
+        new HistoryExporter(snapshot, ids, format, gzip).export(path, listener);
     }
 
     // 导入历史记录
     public void importHistory(String inputFilePath) throws IOException {
+        importHistory(inputFilePath, ProgressListener.NONE);
+    }
+
+    // 同上，每导入一块报告一次字节进度；取消时已导入的块保留
+    public void importHistory(String inputFilePath, ProgressListener listener) throws IOException {
+        OperationTimer.Sample sample = importTimer.start();
+        try {
+            readHistory(inputFilePath, listener);
+        } finally {
+            sample.stop();
+        }
+    }
+
+    private void readHistory(String inputFilePath, ProgressListener listener) throws IOException {
         Path path = Paths.get(inputFilePath);
         if (!Files.exists(path) || !Files.isRegularFile(path)) {
             throw new IOException("文件不存在: " + inputFilePath);
         }
 
-        List<String> importedEntries = Files.readAllLines(path);
-        for (String entry : importedEntries) {
-            if (entry.trim().isEmpty()) continue;
-
-            // 尝试解析不同格式
-            Matcher m = HISTORY_PATTERN.matcher(entry);
-            if (m.find()) {
-                // 标准格式: 直接添加
-                historyCache.add(entry);
-            } else if (entry.contains(",")) {
-                // CSV格式: 时间戳,表达式,结果
-                String[] parts = entry.split(",", 3);
-                if (parts.length == 3) {
-                    String timestamp = parts[0].replaceAll("^\"|\"$", "");
-                    String expression = parts[1].replaceAll("^\"|\"$", "");
-                    String result = parts[2].replaceAll("^\"|\"$", "");
-                    historyCache.add(timestamp + " | " + expression + " = " + result);
+        if (HistoryBinaryFormat.isBinary(path)) {
+            try {
+                readBinary(path, listener);
+            } finally {
+                flush();
+            }
+            return;
+        }
+
+        // 读文件不持锁，按块在写锁内解析并入队，导入期间查询仍可进行
+        List<String> chunk = new ArrayList<>(BATCH_CHUNK_LINES);
+        try (ChunkedLineReader reader = new ChunkedLineReader(path)) {
+            String entry;
+            while ((entry = reader.readLine()) != null) {
+                if (entry.trim().isEmpty()) continue;
+                chunk.add(entry);
+                if (chunk.size() == BATCH_CHUNK_LINES) {
+                    importChunk(chunk);
+                    chunk.clear();
+                    reportProgress(listener, reader.getPosition(), reader.getSize());
                 }
             }
+            importChunk(chunk);
+            reportProgress(listener, reader.getSize(), reader.getSize());
+        } finally {
+            flush();
         }
+    }
 
-        cacheDirty = true;
-        saveCacheToFile();
+    // 二进制文件按记录数报告进度
+    private void readBinary(Path path, ProgressListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            HistoryBinaryFormat.Reader reader = new HistoryBinaryFormat.Reader(channel);
+            int total = reader.size();
+            List<HistoryWriter.Entry> chunk = new ArrayList<>(BATCH_CHUNK_LINES);
+            int[] done = {0};
+            reader.readAll((timestamp, expression, result) -> {
+                chunk.add(new HistoryWriter.Entry(timestamp, expression, result, null));
+                if (chunk.size() == BATCH_CHUNK_LINES) {
+                    importEntries(chunk);
+                    done[0] += chunk.size();
+                    chunk.clear();
+                    reportProgress(listener, done[0], total);
+                }
+            });
+            importEntries(chunk);
+            reportProgress(listener, total, total);
+        }
     }
 
-    // 获取历史记录统计信息
-    public Map<String, Object> getHistoryStats() {
-        if (cacheDirty) loadHistoryToCache();
+    private void importEntries(List<HistoryWriter.Entry> chunk) {
+        if (chunk.isEmpty()) return;
+        if (writer != null) writer.awaitCapacity();
+
+        List<HistoryWriter.Entry> entries = new ArrayList<>(chunk);
+        lock.writeLock().lock();
+        try {
+            for (HistoryWriter.Entry entry : entries) {
+                historyCache.add(entry.timestamp(), entry.expression(), entry.result());
+            }
+            if (writer != null) writer.appendAll(entries);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        Map<String, Object> stats = new LinkedHashMap<>();
-        stats.put("总记录数", historyCache.size());
+    private void importChunk(List<String> chunk) {
+        if (chunk.isEmpty()) return;
+        if (writer != null) writer.awaitCapacity();
 
-        if (historyCache.isEmpty()) {
-            return stats;
-        }
-
-        // 时间范围
-        String first = historyCache.get(0);
-        String last = historyCache.get(historyCache.size() - 1);
-        stats.put("最早记录", first.split(" \\| ")[0]);
-        stats.put("最新记录", last.split(" \\| ")[0]);
-
-        // 常见操作统计
-        Map<String, Integer> operatorCount = new HashMap<>();
-        for (String entry : historyCache) {
-            Matcher m = HISTORY_PATTERN.matcher(entry);
-            if (m.find()) {
-                String expr = m.group(2);
-                if (expr.contains("+")) operatorCount.put("+", operatorCount.getOrDefault("+", 0) + 1);
-                if (expr.contains("-")) operatorCount.put("-", operatorCount.getOrDefault("-", 0) + 1);
-                if (expr.contains("*")) operatorCount.put("*", operatorCount.getOrDefault("*", 0) + 1);
-                if (expr.contains("/")) operatorCount.put("/", operatorCount.getOrDefault("/", 0) + 1);
-                if (expr.contains("^")) operatorCount.put("^", operatorCount.getOrDefault("^", 0) + 1);
-                if (expr.toLowerCase().contains("sin")) operatorCount.put("sin", operatorCount.getOrDefault("sin", 0) + 1);
-                if (expr.toLowerCase().contains("cos")) operatorCount.put("cos", operatorCount.getOrDefault("cos", 0) + 1);
-                if (expr.toLowerCase().contains("sqrt")) operatorCount.put("sqrt", operatorCount.getOrDefault("sqrt", 0) + 1);
+        List<HistoryWriter.Entry> entries = new ArrayList<>(chunk.size());
+        lock.writeLock().lock();
+        try {
+            for (String entry : chunk) {
+                // 尝试解析不同格式: 标准文本格式或 CSV格式
+                if (HistoryFormat.parseLine(entry, historyCache::add)
+                        || (entry.contains(",") && HistoryFormat.parseCsv(entry, historyCache::add))) {
+                    int last = historyCache.size() - 1;
+                    entries.add(new HistoryWriter.Entry(historyCache.timestamp(last), historyCache.expression(last),
+                            historyCache.result(last), null));
+                }
             }
+            if (writer != null) writer.appendAll(entries);
+        } finally {
+            lock.writeLock().unlock();
         }
-        stats.put("操作统计", operatorCount);
+    }
 
-        return stats;
+    // 获取历史记录统计信息：统计随追加增量维护，此处只做汇总
+    public Map<String, Object> getHistoryStats() {
+        lock.readLock().lock();
+        try {
+            return historyCache.stats().toMap();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
-}
\ No newline at end of file
+}
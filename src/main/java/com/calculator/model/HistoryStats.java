@@ -0,0 +1,129 @@
+package com.calculator.model;
+
+import com.calculator.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 随追加增量维护的历史统计：运算符/函数计数、时间范围、结果极值与均值、求值耗时分布
+final class HistoryStats {
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "^"};
+    private static final String[] FUNCTIONS = {
+            "sin", "cos", "tan", "asin", "acos", "atan", "sqrt", "abs", "floor", "ceil", "round", "lg", "ln",
+            "min", "max", "pow", "log", "hypot"};
+
+    private final int[] operatorCounts = new int[OPERATORS.length];
+    private final int[] functionCounts = new int[FUNCTIONS.length];
+    private final boolean[] seenFunctions = new boolean[FUNCTIONS.length];
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long count;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long resultCount;
+    private double resultMin;
+    private double resultMax;
+    private double resultSum;
+
+    HistoryStats() {
+        clear();
+    }
+
+    void add(long timestamp, String expression, double result) {
+        count++;
+        firstTimestamp = Math.min(firstTimestamp, timestamp);
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+
+        if (!Double.isNaN(result)) {
+            resultCount++;
+            resultMin = Math.min(resultMin, result);
+            resultMax = Math.max(resultMax, result);
+            resultSum += result;
+        }
+
+        for (int i = 0; i < OPERATORS.length; i++) {
+            if (expression.contains(OPERATORS[i])) operatorCounts[i]++;
+        }
+        countFunctions(expression);
+    }
+
+    // 每条记录中同一函数只计一次
+    private void countFunctions(String expression) {
+        boolean any = false;
+        int i = 0;
+        while (i < expression.length()) {
+            if (!Character.isLetter(expression.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < expression.length() && Character.isLetter(expression.charAt(i))) i++;
+            for (int f = 0; f < FUNCTIONS.length; f++) {
+                if (!seenFunctions[f] && FUNCTIONS[f].length() == i - start
+                        && expression.regionMatches(true, start, FUNCTIONS[f], 0, i - start)) {
+                    seenFunctions[f] = true;
+                    functionCounts[f]++;
+                    any = true;
+                }
+            }
+        }
+        if (any) {
+            for (int f = 0; f < FUNCTIONS.length; f++) seenFunctions[f] = false;
+        }
+    }
+
+    void recordLatency(long nanos) {
+        latency.record(nanos);
+    }
+
+    void clear() {
+        count = 0;
+        firstTimestamp = Long.MAX_VALUE;
+        lastTimestamp = Long.MIN_VALUE;
+        resultCount = 0;
+        resultMin = Double.POSITIVE_INFINITY;
+        resultMax = Double.NEGATIVE_INFINITY;
+        resultSum = 0;
+        for (int i = 0; i < operatorCounts.length; i++) operatorCounts[i] = 0;
+        for (int i = 0; i < functionCounts.length; i++) functionCounts[i] = 0;
+        latency.reset();
+    }
+
+    // 汇总为展示用的映射，耗时与记录数无关
+    Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("总记录数", count);
+        if (count == 0) {
+            return stats;
+        }
+
+        stats.put("最早记录", HistoryFormat.formatTimestamp(firstTimestamp));
+        stats.put("最新记录", HistoryFormat.formatTimestamp(lastTimestamp));
+        if (resultCount > 0) {
+            stats.put("结果最小值", HistoryFormat.formatResult(resultMin));
+            stats.put("结果最大值", HistoryFormat.formatResult(resultMax));
+            stats.put("结果平均值", HistoryFormat.formatResult(resultSum / resultCount));
+        }
+        if (latency.getCount() > 0) {
+            stats.put("平均耗时", formatNanos((long) latency.getMean()));
+            stats.put("P50耗时", formatNanos(latency.getPercentile(50)));
+            stats.put("P99耗时", formatNanos(latency.getPercentile(99)));
+            stats.put("最大耗时", formatNanos(latency.getMax()));
+        }
+
+        Map<String, Integer> operatorCount = new LinkedHashMap<>();
+        for (int i = 0; i < OPERATORS.length; i++) {
+            if (operatorCounts[i] > 0) operatorCount.put(OPERATORS[i], operatorCounts[i]);
+        }
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            if (functionCounts[i] > 0) operatorCount.put(FUNCTIONS[i], functionCounts[i]);
+        }
+        stats.put("操作统计", operatorCount);
+        return stats;
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return String.format("%.1fµs", nanos / 1e3);
+        return String.format("%.1fms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,221 @@
+package com.calculator.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// 列式存储的历史记录：时间戳（毫秒）、表达式和结果分别存放在并行数组中，只在文本边界格式化
+final class HistoryStore {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] results = new double[INITIAL_CAPACITY];
+    private String[] expressions = new String[INITIAL_CAPACITY];
+    private int size;
+    private final HistoryIndex index = new HistoryIndex();
+    private final HistoryStats stats = new HistoryStats();
+    // 时间戳是否按追加顺序单调不减；否则按需构建按时间排序的编号表
+    private boolean timeOrdered = true;
+    private int[] byTime;
+
+    void add(long timestamp, String expression, double result) {
+        add(timestamp, expression, result, HistoryFormat.formatResult(result));
+    }
+
+    // resultText 为 formatResult(result)，允许调用方在加锁之前格式化
+    void add(long timestamp, String expression, double result, String resultText) {
+        if (size == timestamps.length) {
+            int capacity = size + (size >> 1);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            results = Arrays.copyOf(results, capacity);
+            expressions = Arrays.copyOf(expressions, capacity);
+        }
+        timestamps[size] = timestamp;
+        expressions[size] = expression;
+        results[size] = result;
+        if (size > 0 && timestamp < timestamps[size - 1]) timeOrdered = false;
+        byTime = null;
+        // 与 formatLine 中分隔符 "|" 之后的文本一致，查询可以从分隔符后的空格开始
+        index.add(size, " " + expression + " = " + resultText);
+        stats.add(timestamp, expression, result);
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    String expression(int index) {
+        return expressions[index];
+    }
+
+    double result(int index) {
+        return results[index];
+    }
+
+    HistoryStats stats() {
+        return stats;
+    }
+
+    String format(int index) {
+        return HistoryFormat.formatLine(timestamps[index], expressions[index], results[index]);
+    }
+
+    // 不复制的只读视图：追加只写 size 之后的位置，扩容和清空都换成新数组，所以视图内的内容不会再变，
+    // 在锁内取得后可在锁外读取
+    Snapshot snapshot() {
+        return new Snapshot(timestamps, expressions, results, size);
+    }
+
+    // 复制当前内容作为快照，供后台写入线程在不持锁的情况下编码
+    Iterable<HistoryWriter.Entry> snapshotEntries() {
+        final int count = size;
+        final long[] ts = Arrays.copyOf(timestamps, count);
+        final String[] exprs = Arrays.copyOf(expressions, count);
+        final double[] res = Arrays.copyOf(results, count);
+        return () -> new Iterator<HistoryWriter.Entry>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public HistoryWriter.Entry next() {
+                if (next >= count) throw new NoSuchElementException();
+                int i = next++;
+                return new HistoryWriter.Entry(ts[i], exprs[i], res[i], null);
+            }
+        };
+    }
+
+    // 可能匹配 lowerQuery 的记录编号（升序，需校验）；返回 null 表示只能全量扫描
+    int[] search(String lowerQuery) {
+        if (lowerQuery.indexOf('|') >= 0) return null;
+
+        int timestampMatch = HistoryFormat.timestampMatch(lowerQuery);
+        if (timestampMatch > 0) return null;
+
+        int[] ids = index.candidates(lowerQuery);
+        if (ids == null) return null;
+        if (timestampMatch == 0) {
+            long[] range = HistoryFormat.timestampPrefixRange(lowerQuery);
+            int[] inRange = rangeByTime(range[0], range[1]);
+            Arrays.sort(inRange);
+            ids = HistoryIndex.union(ids, inRange);
+        }
+        return ids;
+    }
+
+    // 按时间先后排第 rank 位（从 0 开始）的记录编号；追加顺序即时间顺序时不需要排序
+    int chronologicalId(int rank) {
+        return timeOrdered ? rank : timeOrder()[rank];
+    }
+
+    // 把升序的记录编号按时间先后重排（时间相同时保持编号顺序）
+    int[] chronological(int[] ids) {
+        if (timeOrdered) return ids;
+        boolean[] selected = new boolean[size];
+        for (int id : ids) selected[id] = true;
+        int[] result = new int[ids.length];
+        int count = 0;
+        for (int id : timeOrder()) {
+            if (selected[id]) result[count++] = id;
+        }
+        return result;
+    }
+
+    // 时间戳落在 [from, to] 内的记录编号，按时间先后排列
+    int[] rangeByTime(long from, long to) {
+        if (from > to) return new int[0];
+        if (timeOrdered) {
+            int lo = lowerBound(from);
+            int hi = lowerBound(to == Long.MAX_VALUE ? to : to + 1);
+            int[] ids = new int[hi - lo];
+            for (int i = 0; i < ids.length; i++) ids[i] = lo + i;
+            return ids;
+        }
+
+        int[] order = timeOrder();
+        int lo = 0, hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[order[mid]] < from) lo = mid + 1; else hi = mid;
+        }
+        int start = lo;
+        hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[order[mid]] <= to) lo = mid + 1; else hi = mid;
+        }
+        return Arrays.copyOfRange(order, start, lo);
+    }
+
+    private int lowerBound(long timestamp) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestamps[mid] < timestamp) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // 按时间戳稳定排序的编号表（归并排序）；并发读取时可能同时触发构建，因此加锁
+    private synchronized int[] timeOrder() {
+        if (byTime != null) return byTime;
+        int[] order = new int[size];
+        int[] buffer = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size; lo += 2 * width) {
+                int mid = Math.min(lo + width, size);
+                int hi = Math.min(lo + 2 * width, size);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    buffer[k++] = timestamps[order[j]] < timestamps[order[i]] ? order[j++] : order[i++];
+                }
+                while (i < mid) buffer[k++] = order[i++];
+                while (j < hi) buffer[k++] = order[j++];
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        byTime = order;
+        return order;
+    }
+
+    void clear() {
+        timestamps = new long[INITIAL_CAPACITY];
+        results = new double[INITIAL_CAPACITY];
+        expressions = new String[INITIAL_CAPACITY];
+        size = 0;
+        index.clear();
+        stats.clear();
+        timeOrdered = true;
+        byTime = null;
+    }
+
+    static final class Snapshot {
+        final long[] timestamps;
+        final String[] expressions;
+        final double[] results;
+        final int size;
+
+        private Snapshot(long[] timestamps, String[] expressions, double[] results, int size) {
+            this.timestamps = timestamps;
+            this.expressions = expressions;
+            this.results = results;
+            this.size = size;
+        }
+    }
+}
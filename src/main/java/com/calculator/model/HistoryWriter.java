@@ -0,0 +1,248 @@
+package com.calculator.model;
+
+import com.calculator.metrics.Counter;
+import com.calculator.metrics.Metrics;
+import com.calculator.metrics.OperationTimer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 后台写入线程：生产者把记录放入无锁队列，由唯一的写入线程编码并追加到日志，队列顺序即文件顺序。
+// 入队与设置 closed 在同一把锁下进行，关闭时写入线程把已接受的记录全部写完才退出
+final class HistoryWriter implements Closeable {
+    private final HistoryJournal journal;
+    private final int capacity;
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // 在 awaitCapacity 中等待的生产者数，写入线程只在有人等待时才加锁唤醒
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Thread thread;
+    private final OperationTimer writeTimer;
+    private final Counter writeErrors;
+    private volatile boolean closed;
+
+    HistoryWriter(HistoryJournal journal, int capacity, Metrics metrics) {
+        this.journal = journal;
+        this.capacity = Math.max(1, capacity);
+        this.writeTimer = metrics.timer("history.journal.write");
+        this.writeErrors = metrics.counter("history.journal.errors");
+        this.thread = new Thread(this::run, "history-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // 尚未写入日志的记录数
+    int getPending() {
+        return pending.get();
+    }
+
+    boolean isBackedUp() {
+        return pending.get() >= capacity;
+    }
+
+    // 背压：写入线程落后时阻塞生产者，直到队列低于容量或写入线程关闭
+    void awaitCapacity() {
+        if (pending.get() < capacity) return;
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            while (pending.get() >= capacity && !closed) {
+                notFull.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+
+    void append(long timestamp, String expression, double result, String resultText) {
+        submit(new Entry(timestamp, expression, result, resultText), 1);
+    }
+
+    void appendAll(List<Entry> entries) {
+        if (!entries.isEmpty()) submit(entries, entries.size());
+    }
+
+    // 在此之前提交的记录写完之后，用给定内容整体重写日志文件；返回的 Rewrite 可用于等待结果
+    Rewrite rewrite(Iterable<Entry> entries) {
+        Rewrite rewrite = new Rewrite(entries);
+        if (!submit(rewrite, 1)) rewrite.finish(new IOException("历史记录文件已关闭"));
+        return rewrite;
+    }
+
+    // 等待此前提交的记录全部写入并提交
+    void flush() {
+        CountDownLatch done = new CountDownLatch(1);
+        if (!submit(done, 0)) return;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // 关闭后提交的操作被丢弃，返回 false
+    private boolean submit(Object op, int weight) {
+        lock.lock();
+        try {
+            if (closed) return false;
+            pending.addAndGet(weight);
+            queue.offer(op);
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    private void completed(int weight) {
+        if (weight != 0 && pending.addAndGet(-weight) < capacity && waiting.get() > 0) {
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() {
+        while (true) {
+            Object op = queue.poll();
+            if (op == null) {
+                if (!closed) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                // closed 在入队的同一把锁下设置，看到 closed 后队列中已包含所有被接受的操作
+                op = queue.poll();
+                if (op == null) return;
+            }
+
+            OperationTimer.Sample sample = writeTimer.start();
+            try {
+                if (op instanceof Entry) {
+                    journal.append((Entry) op);
+                } else if (op instanceof List) {
+                    journal.appendAll((List<Entry>) op);
+                } else if (op instanceof Rewrite) {
+                    journal.rewrite(((Rewrite) op).entries);
+                    ((Rewrite) op).finish(null);
+                } else if (op instanceof CountDownLatch) {
+                    journal.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                writeErrors.increment();
+                System.err.println("无法保存历史记录: " + e.getMessage());
+                if (op instanceof Rewrite) {
+                    ((Rewrite) op).finish(e instanceof IOException ? (IOException) e : new IOException(e));
+                }
+            } finally {
+                if (op instanceof CountDownLatch) {
+                    ((CountDownLatch) op).countDown();
+                } else {
+                    completed(op instanceof List ? ((List<?>) op).size() : 1);
+                }
+            }
+            sample.stop();
+        }
+    }
+
+    // 此前被接受的操作全部写完后关闭日志；之后的提交被丢弃
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    // 待写入的一条记录，由写入线程编码；resultText 为 null 时在格式化时生成
+    static final class Entry {
+        private final long timestamp;
+        private final String expression;
+        private final double result;
+        private final String resultText;
+
+        Entry(long timestamp, String expression, double result, String resultText) {
+            this.timestamp = timestamp;
+            this.expression = expression;
+            this.result = result;
+            this.resultText = resultText;
+        }
+
+        long timestamp() {
+            return timestamp;
+        }
+
+        String expression() {
+            return expression;
+        }
+
+        double result() {
+            return result;
+        }
+
+        String format() {
+            return HistoryFormat.formatLine(timestamp, expression,
+                    resultText != null ? resultText : HistoryFormat.formatResult(result));
+        }
+    }
+
+    // 一次整体重写；写入线程完成后记录结果，失败时原文件保持不变
+    static final class Rewrite {
+        private final Iterable<Entry> entries;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile IOException error;
+
+        Rewrite(Iterable<Entry> entries) {
+            this.entries = entries;
+        }
+
+        private void finish(IOException error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        // 等待重写完成，失败时抛出写入线程遇到的异常
+        void await() throws IOException {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            if (error != null) throw new IOException(error.getMessage(), error);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.calculator.model;
+
+// 运行时生成的求值类由独立的类加载器定义，只能访问公开成员：这里是它们实现的接口和调用的带检查运算，
+// 检查逻辑仍由 CompiledExpression 提供，保证与解释执行的结果和错误完全一致
+public final class JitSupport {
+    private JitSupport() {
+    }
+
+    public interface Evaluator {
+        double evaluate(double[] slots);
+    }
+
+    public static double divide(double a, double b) {
+        return CompiledExpression.divide(a, b);
+    }
+
+    public static double sqrt(double value) {
+        return CompiledExpression.applyFunction(CompiledExpression.SQRT, value);
+    }
+
+    public static double lg(double value) {
+        return CompiledExpression.applyFunction(CompiledExpression.LG, value);
+    }
+
+    public static double ln(double value) {
+        return CompiledExpression.applyFunction(CompiledExpression.LN, value);
+    }
+
+    public static double log(double base, double value) {
+        return CompiledExpression.applyBinary(CompiledExpression.LOG, base, value);
+    }
+}
@@ -0,0 +1,67 @@
+package com.calculator.model;
+
+import java.util.Arrays;
+
+// 编译期使用的指令缓冲区，同时跟踪操作数栈深度
+final class ProgramBuilder implements ProgramSink {
+    private byte[] code = new byte[16];
+    private int[] args = new int[16];
+    private double[] constants = new double[8];
+    private int size;
+    private int constantCount;
+    private int depth;
+    private int maxDepth;
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public void emitConstant(double value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        emit(CompiledExpression.CONST, constantCount++, 1);
+    }
+
+    @Override
+    public void emitLoad(int slot) {
+        emit(CompiledExpression.LOAD, slot, 1);
+    }
+
+    void emitDup() {
+        emit(CompiledExpression.DUP, 0, 1);
+    }
+
+    @Override
+    public void emitBinary(byte op) {
+        emit(op, 0, -1);
+    }
+
+    @Override
+    public void emitFunction(byte op) {
+        emit(op, 0, 0);
+    }
+
+    private void emit(byte op, int arg, int stackEffect) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+            args = Arrays.copyOf(args, size * 2);
+        }
+        code[size] = op;
+        args[size] = arg;
+        size++;
+        depth += stackEffect;
+        if (depth > maxDepth) maxDepth = depth;
+    }
+
+    CompiledExpression build(String source, String[] variableNames) {
+        return new CompiledExpression(source, variableNames,
+                Arrays.copyOf(code, size),
+                Arrays.copyOf(args, size),
+                Arrays.copyOf(constants, constantCount),
+                maxDepth);
+    }
+}
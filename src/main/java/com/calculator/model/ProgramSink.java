@@ -0,0 +1,15 @@
+package com.calculator.model;
+
+// 后缀指令的接收方：ProgramBuilder 把指令记录为程序，DirectEvaluator 收到即执行
+interface ProgramSink {
+    // 当前操作数栈深度
+    int depth();
+
+    void emitConstant(double value);
+
+    void emitLoad(int slot);
+
+    void emitBinary(byte op);
+
+    void emitFunction(byte op);
+}
@@ -0,0 +1,18 @@
+package com.calculator.model;
+
+// 长时间文件操作的进度回调，在执行操作的线程上调用；每处理完一块调用一次，而不是每行一次
+public interface ProgressListener {
+    ProgressListener NONE = (done, total) -> { };
+
+    // done/total 的单位由操作决定：读文件时为字节数，导出时为记录数
+    void onProgress(long done, long total);
+
+    // 批量求值中某一行失败
+    default void onLineError(BatchResult.LineError error) {
+    }
+
+    // 返回 true 时操作在当前块结束后抛出 CancellationException，已处理的块保留
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,207 @@
+package com.calculator.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// 有界、线程安全的求值结果缓存：按规范化后的表达式分段加锁，支持 LRU 或 TinyLFU 式的频率准入淘汰
+public class ResultCache {
+    public enum EvictionPolicy {
+        // 淘汰最久未访问的条目
+        LRU,
+        // 在 LRU 的基础上按访问频率准入：新条目只有比待淘汰条目更常用时才替换它
+        FREQUENCY
+    }
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final EvictionPolicy policy;
+    private final FrequencySketch sketch;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile boolean enabled = true;
+
+    public ResultCache(int maxSize) {
+        this(maxSize, EvictionPolicy.LRU);
+    }
+
+    public ResultCache(int maxSize, EvictionPolicy policy) {
+        if (maxSize <= 0) throw new IllegalArgumentException("缓存容量必须为正数: " + maxSize);
+        this.policy = policy;
+        int segmentCount = Math.max(1, Math.min(MAX_SEGMENTS, Integer.highestOneBit(maxSize / 16)));
+        segments = new Segment[segmentCount];
+        int perSegment = (maxSize + segmentCount - 1) / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        sketch = policy == EvictionPolicy.FREQUENCY ? new FrequencySketch(maxSize) : null;
+    }
+
+    // 未命中或缓存已关闭时返回 null
+    Double get(String key) {
+        if (!enabled) return null;
+        if (sketch != null) sketch.increment(key.hashCode());
+
+        Double value = segmentFor(key).get(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    void put(String key, double value) {
+        if (!enabled) return;
+        segmentFor(key).put(key, value);
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 关闭后 get 总是未命中且不再写入，已有条目被清空
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) clear();
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public EvictionPolicy getPolicy() {
+        return policy;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("命中 %d, 未命中 %d, 淘汰 %d, 命中率 %.1f%%",
+                getHitCount(), getMissCount(), getEvictionCount(), getHitRate() * 100);
+    }
+
+    private final class Segment {
+        private final int capacity;
+        private final LinkedHashMap<String, Double> entries;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        synchronized Double get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, double value) {
+            if (entries.containsKey(key) || entries.size() < capacity) {
+                entries.put(key, value);
+                return;
+            }
+
+            Iterator<Map.Entry<String, Double>> eldest = entries.entrySet().iterator();
+            String victim = eldest.next().getKey();
+            if (sketch != null && sketch.frequency(key.hashCode()) <= sketch.frequency(victim.hashCode())) {
+                // 频率准入：新条目不如待淘汰条目常用，直接放弃缓存
+                return;
+            }
+            eldest.remove();
+            evictions.increment();
+            entries.put(key, value);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    // 近似频率统计（Count-Min Sketch，4 个哈希、计数饱和于 15），定期减半以适应访问模式变化；
+    // 不加锁，并发下少量计数丢失不影响准入判断
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+        private final byte[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, maxSize) * 2 - 1) << 1;
+            table = new byte[width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(16, maxSize);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int seed : SEEDS) {
+                int index = indexOf(hash, seed);
+                if (table[index] < 15) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int seed : SEEDS) {
+                min = Math.min(min, table[indexOf(hash, seed)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int hash, int seed) {
+            int h = hash * seed;
+            h ^= h >>> 15;
+            return h & mask;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.calculator.server;
+
+import com.calculator.model.ExpressionParser;
+import com.calculator.model.HistoryManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+// 本地求值服务：单线程 NIO 事件循环，按行处理请求
+//   普通行       一个表达式，返回一行结果或 "ERR 错误信息"
+//   以 [ 开头    JSON 字符串数组，返回等长的 JSON 数组，元素为数值或 {"error": "..."}
+// 客户端可以不等响应连续发送（流水线），同一连接的响应严格按请求顺序返回；
+// 历史写入线程积压或响应未发出的数据过多时暂停读取该连接，由 TCP 窗口向客户端施加背压；
+// 事件循环从不阻塞等待历史写入，批量请求在元素之间检查积压，暂停后从下一个元素继续
+public class EvaluationServer implements Closeable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 16 * 1024 * 1024;
+    private static final int MAX_PENDING_OUTPUT = 1024 * 1024;
+    private static final long BACKPRESSURE_POLL_MILLIS = 10;
+
+    private final ExpressionParser parser;
+    private final HistoryManager historyManager;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final List<Connection> paused = new ArrayList<>();
+    private volatile boolean running = true;
+
+    // historyManager 为 null 时不记录历史；端口为 0 时由系统分配
+    public EvaluationServer(ExpressionParser parser, HistoryManager historyManager,
+                            InetSocketAddress address) throws IOException {
+        this.parser = parser;
+        this.historyManager = historyManager;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    // 在当前线程运行事件循环，直到 stop() 或 close() 被调用
+    public void run() throws IOException {
+        try {
+            while (running) {
+                selector.select(paused.isEmpty() ? 0 : BACKPRESSURE_POLL_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isWritable()) connection.write();
+                            if (key.isValid() && key.isReadable()) connection.read();
+                        }
+                    } catch (IOException e) {
+                        closeQuietly(key);
+                    }
+                }
+                resumePaused();
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            selector.close();
+        }
+    }
+
+    // 让事件循环退出，可从任意线程重复调用；连接和监听端口由 run() 退出时关闭
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(key, channel));
+    }
+
+    // 背压解除后继续处理已缓冲的请求并恢复读取
+    private void resumePaused() {
+        if (paused.isEmpty()) return;
+        List<Connection> waiting = new ArrayList<>(paused);
+        paused.clear();
+        for (Connection connection : waiting) {
+            try {
+                connection.resume();
+            } catch (IOException e) {
+                closeQuietly(connection.key);
+            }
+        }
+    }
+
+    private boolean historyBackedUp() {
+        return historyManager != null && historyManager.isBackedUp();
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // 连接已断开
+        }
+    }
+
+    private final class Connection {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private ByteBuffer out = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final StringBuilder response = new StringBuilder();
+        private boolean inputClosed;
+        // 因历史积压暂停的批量请求及下一个待求值的元素
+        private List<String> batch;
+        private int batchNext;
+
+        Connection(SelectionKey key, SocketChannel channel) {
+            this.key = key;
+            this.channel = channel;
+            out.flip();
+        }
+
+        void read() throws IOException {
+            if (!in.hasRemaining()) {
+                if (in.capacity() >= MAX_LINE_LENGTH) {
+                    throw new IOException("请求行过长");
+                }
+                ByteBuffer larger = ByteBuffer.allocate(in.capacity() * 2);
+                in.flip();
+                larger.put(in);
+                in = larger;
+            }
+            if (channel.read(in) < 0) {
+                inputClosed = true;
+            }
+            process();
+        }
+
+        void resume() throws IOException {
+            if (key.isValid()) process();
+        }
+
+        // 处理缓冲区中所有完整的行，一次读取中的多个请求只产生一次写出
+        private void process() throws IOException {
+            in.flip();
+            byte[] data = in.array();
+            int lineStart = in.position();
+            boolean blocked = !continueBatch();
+            for (int i = lineStart; !blocked && i < in.limit(); i++) {
+                if (data[i] != '\n') continue;
+                if (historyBackedUp() || pendingOutput() >= MAX_PENDING_OUTPUT) {
+                    blocked = true;
+                    break;
+                }
+                int end = i > lineStart && data[i - 1] == '\r' ? i - 1 : i;
+                blocked = !handleLine(new String(data, lineStart, end - lineStart, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+            if (inputClosed && !blocked && lineStart < in.limit()) {
+                // 对端关闭前的最后一行可以没有换行符
+                blocked = !handleLine(new String(data, lineStart, in.limit() - lineStart, StandardCharsets.UTF_8));
+                lineStart = in.limit();
+            }
+            in.position(lineStart);
+            in.compact();
+
+            flushResponse();
+            write();
+            if (!key.isValid()) return;
+
+            if (blocked) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                paused.add(this);
+            } else if (inputClosed) {
+                // 对端已关闭输出，发完剩余响应后关闭连接
+                if (key.isValid()) key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            } else {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        private int pendingOutput() {
+            return out.remaining() + response.length();
+        }
+
+        // 返回 false 表示批量请求因历史积压只处理了一部分，剩余元素由 continueBatch 继续
+        private boolean handleLine(String line) {
+            String request = line.trim();
+            if (request.isEmpty()) return true;
+            if (request.charAt(0) == '[') {
+                return handleBatch(request);
+            }
+            try {
+                response.append(formatNumber(evaluate(request))).append('\n');
+            } catch (Exception e) {
+                response.append("ERR ").append(e.getMessage()).append('\n');
+            }
+            return true;
+        }
+
+        private boolean handleBatch(String request) {
+            try {
+                batch = Json.parseStringArray(request);
+            } catch (IllegalArgumentException e) {
+                response.append("ERR ").append(e.getMessage()).append('\n');
+                return true;
+            }
+            batchNext = 0;
+            response.append('[');
+            return continueBatch();
+        }
+
+        // 逐个求值批量请求的剩余元素，每个元素之前检查历史积压；返回 false 表示再次暂停
+        private boolean continueBatch() {
+            if (batch == null) return true;
+            while (batchNext < batch.size()) {
+                if (historyBackedUp()) return false;
+                if (batchNext > 0) response.append(',');
+                String expression = batch.get(batchNext++);
+                try {
+                    double result = evaluate(expression);
+                    if (Double.isNaN(result) || Double.isInfinite(result)) {
+                        Json.appendString(response, Double.toString(result));
+                    } else {
+                        response.append(formatNumber(result));
+                    }
+                } catch (Exception e) {
+                    response.append("{\"error\":");
+                    Json.appendString(response, String.valueOf(e.getMessage()));
+                    response.append('}');
+                }
+            }
+            response.append("]\n");
+            batch = null;
+            return true;
+        }
+
+        // 事件循环线程上不能等待写入线程，积压由调用方在请求和批量元素之间检查
+        private double evaluate(String expression) {
+            long start = System.nanoTime();
+            double result = parser.evaluate(expression);
+            long latencyNanos = System.nanoTime() - start;
+            if (historyManager != null) historyManager.offerHistory(expression.trim(), result, latencyNanos);
+            return result;
+        }
+
+        private void flushResponse() {
+            if (response.length() == 0) return;
+            byte[] bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+            response.setLength(0);
+            if (out.capacity() - out.remaining() < bytes.length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.remaining() + bytes.length));
+                larger.put(out);
+                out = larger;
+            } else {
+                out.compact();
+            }
+            out.put(bytes);
+            out.flip();
+        }
+
+        void write() throws IOException {
+            if (out.hasRemaining()) channel.write(out);
+            if (out.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (inputClosed && in.position() == 0 && !paused.contains(this)) {
+                closeQuietly(key);
+            }
+        }
+    }
+
+    private static String formatNumber(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+}
@@ -0,0 +1,111 @@
+package com.calculator.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 批量请求所需的最小 JSON 支持：只解析字符串数组，只输出字符串字面量
+final class Json {
+    private Json() {
+    }
+
+    // 解析形如 ["1+2", "sqrt(2)"] 的数组
+    static List<String> parseStringArray(String text) {
+        List<String> values = new ArrayList<>();
+        int[] pos = {skipWhitespace(text, 0)};
+        expect(text, pos, '[');
+        pos[0] = skipWhitespace(text, pos[0]);
+        if (pos[0] < text.length() && text.charAt(pos[0]) == ']') {
+            pos[0]++;
+        } else {
+            while (true) {
+                pos[0] = skipWhitespace(text, pos[0]);
+                values.add(parseString(text, pos));
+                pos[0] = skipWhitespace(text, pos[0]);
+                if (pos[0] < text.length() && text.charAt(pos[0]) == ',') {
+                    pos[0]++;
+                    continue;
+                }
+                expect(text, pos, ']');
+                break;
+            }
+        }
+        if (skipWhitespace(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("无效的 JSON 批量请求");
+        }
+        return values;
+    }
+
+    private static String parseString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0];
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                pos[0] = i;
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i >= text.length()) break;
+            char escaped = text.charAt(i++);
+            switch (escaped) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 > text.length()) throw new IllegalArgumentException("无效的 JSON 批量请求");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("无效的 JSON 批量请求");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("无效的 JSON 批量请求");
+            }
+        }
+        throw new IllegalArgumentException("无效的 JSON 批量请求");
+    }
+
+    private static void expect(String text, int[] pos, char c) {
+        if (pos[0] >= text.length() || text.charAt(pos[0]) != c) {
+            throw new IllegalArgumentException("无效的 JSON 批量请求");
+        }
+        pos[0]++;
+    }
+
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+
+    static void appendString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -4,8 +4,16 @@ import javax.swing.*;
 import java.awt.*;
 
 public class CalculatorGUI extends JFrame {
+    // 结果区最多保留的行数
+    private static final int MAX_RESULT_LINES = 10000;
+    private static final int RESULT_FLUSH_MILLIS = 16;
+
     private JTextField expressionField;
-    private JTextArea resultArea;
+    private JList<String> resultList;
+    private ResultConsoleModel resultModel;
+    // 一帧内的多次追加先合并，由定时器统一写入结果区
+    private final StringBuilder pendingResult = new StringBuilder();
+    private Timer resultFlushTimer;
     private JButton calculateButton;
     private JButton clearButton;
     private JButton historyButton;
@@ -16,6 +24,9 @@ public class CalculatorGUI extends JFrame {
     private JButton searchButton;
     private JButton statsButton;
     private JButton advancedButton;
+    private JPanel progressPanel;
+    private JProgressBar progressBar;
+    private JButton cancelButton;
 
     public CalculatorGUI() {
         super("数学表达式计算器");
@@ -76,15 +87,31 @@ public class CalculatorGUI extends JFrame {
         JPanel resultPanel = new JPanel(new BorderLayout(10, 10));
         resultPanel.setBorder(BorderFactory.createTitledBorder("计算结果和历史记录"));
 
-        resultArea = new JTextArea();
-        resultArea.setFont(new Font("微软雅黑", Font.BOLD, 30));
-        resultArea.setEditable(false);
-        resultArea.setBackground(new Color(245, 245, 245));
-        resultArea.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-
-        JScrollPane scrollPane = new JScrollPane(resultArea);
+        // 只渲染可见行：固定行高和行宽，JList 不必逐行测量全部内容
+        resultModel = new ResultConsoleModel(MAX_RESULT_LINES);
+        resultList = new JList<>(resultModel);
+        resultList.setFont(new Font("微软雅黑", Font.BOLD, 30));
+        resultList.setBackground(new Color(245, 245, 245));
+        resultList.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        resultList.setFixedCellHeight(resultList.getFontMetrics(resultList.getFont()).getHeight());
+        resultList.setFixedCellWidth(1);
+        resultFlushTimer = new Timer(RESULT_FLUSH_MILLIS, e -> flushResult());
+        resultFlushTimer.setRepeats(false);
+
+        JScrollPane scrollPane = new JScrollPane(resultList);
         resultPanel.add(scrollPane, BorderLayout.CENTER);
 
+        // 后台任务进度，任务运行时才显示
+        progressPanel = new JPanel(new BorderLayout(10, 10));
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setFont(new Font("微软雅黑", Font.PLAIN, 14));
+        cancelButton = createStyledButton("取消", new Color(205, 92, 92));
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.EAST);
+        progressPanel.setVisible(false);
+        resultPanel.add(progressPanel, BorderLayout.SOUTH);
+
         mainPanel.add(inputPanel, BorderLayout.NORTH);
         mainPanel.add(mainButtonPanel, BorderLayout.SOUTH);
         mainPanel.add(resultPanel, BorderLayout.CENTER);
@@ -113,15 +140,65 @@ public class CalculatorGUI extends JFrame {
     public JButton getSearchButton() { return searchButton; }
     public JButton getStatsButton() { return statsButton; }
     public JButton getAdvancedButton() { return advancedButton; }
+    public JButton getCancelButton() { return cancelButton; }
 
     // View methods for controller
     public String getExpression() { return expressionField.getText(); }
     public void clearExpression() { expressionField.setText(""); }
-    public void clearResult() { resultArea.setText(""); }
-    public void setResult(String text) { resultArea.setText(text); }
-    public void appendResult(String text) { resultArea.append(text); }
+    public void clearResult() { setResult(""); }
+
+    public void setResult(String text) {
+        pendingResult.setLength(0);
+        resultModel.clear();
+        resultList.setFixedCellWidth(1);
+        appendResult(text);
+    }
+
+    public void appendResult(String text) {
+        pendingResult.append(text);
+        if (!resultFlushTimer.isRunning()) resultFlushTimer.start();
+    }
+
+    private void flushResult() {
+        resultFlushTimer.stop();
+        if (pendingResult.length() == 0) return;
+        String widest = resultModel.append(pendingResult);
+        pendingResult.setLength(0);
+
+        // 预留单元格渲染器边框的宽度
+        int width = resultList.getFontMetrics(resultList.getFont()).stringWidth(widest) + 4;
+        if (width > resultList.getFixedCellWidth()) resultList.setFixedCellWidth(width);
+        int last = resultModel.getSize() - 1;
+        if (last >= 0) resultList.ensureIndexIsVisible(last);
+    }
     public void focusExpressionField() { expressionField.requestFocus(); expressionField.selectAll(); }
 
+    // 显示进度条，同时禁用会启动文件任务的按钮
+    public void showProgress(String text) {
+        progressBar.setValue(0);
+        progressBar.setString(text);
+        cancelButton.setEnabled(true);
+        progressPanel.setVisible(true);
+        setFileActionsEnabled(false);
+    }
+
+    public void setProgress(int percent, String text) {
+        progressBar.setValue(percent);
+        progressBar.setString(text);
+    }
+
+    public void hideProgress() {
+        progressPanel.setVisible(false);
+        setFileActionsEnabled(true);
+    }
+
+    private void setFileActionsEnabled(boolean enabled) {
+        fileInputButton.setEnabled(enabled);
+        importButton.setEnabled(enabled);
+        exportButton.setEnabled(enabled);
+        clearHistoryButton.setEnabled(enabled);
+    }
+
     public void showError(String message, String title) {
         JOptionPane.showMessageDialog(this, message, title, JOptionPane.ERROR_MESSAGE);
     }
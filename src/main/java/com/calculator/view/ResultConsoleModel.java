@@ -0,0 +1,99 @@
+package com.calculator.view;
+
+import javax.swing.*;
+import java.util.Arrays;
+
+// 结果区的环形缓冲：按行保存最近 capacity 行，超出时丢弃最早的行；只在 EDT 上访问
+final class ResultConsoleModel extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] rows;
+    private int head;
+    private int size;
+    // 最后一行是否还没有遇到换行符，下次追加的文本接在它后面
+    private boolean lastRowOpen;
+
+    ResultConsoleModel(int capacity) {
+        rows = new String[capacity];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return rows[(head + index) % rows.length];
+    }
+
+    // 追加文本并返回新增行中最长的一行，用于调整单元格宽度
+    String append(CharSequence text) {
+        int oldSize = size;
+        int removed = 0;
+        int added = 0;
+        boolean openRowChanged = false;
+        String widest = "";
+
+        int start = 0;
+        int length = text.length();
+        while (start < length) {
+            int newline = indexOf(text, '\n', start);
+            int end = newline < 0 ? length : newline;
+            String row = text.subSequence(start, end).toString();
+
+            if (lastRowOpen && size > 0) {
+                int last = (head + size - 1) % rows.length;
+                rows[last] = rows[last] + row;
+                row = rows[last];
+                if (added == 0) openRowChanged = true;
+            } else {
+                if (size == rows.length) {
+                    rows[head] = null;
+                    head = (head + 1) % rows.length;
+                    size--;
+                    removed++;
+                }
+                rows[(head + size) % rows.length] = row;
+                size++;
+                added++;
+            }
+            if (row.length() > widest.length()) widest = row;
+
+            lastRowOpen = newline < 0;
+            start = end + 1;
+        }
+
+        fireChanges(oldSize, removed, added, openRowChanged);
+        return widest;
+    }
+
+    private void fireChanges(int oldSize, int removed, int added, boolean openRowChanged) {
+        if (removed >= oldSize && removed > 0) {
+            // 原有行全部被挤出，整体刷新
+            fireContentsChanged(this, 0, Math.max(oldSize, size) - 1);
+            if (size < oldSize) fireIntervalRemoved(this, size, oldSize - 1);
+            if (size > oldSize) fireIntervalAdded(this, oldSize, size - 1);
+            return;
+        }
+        if (removed > 0) fireIntervalRemoved(this, 0, removed - 1);
+        if (added > 0) fireIntervalAdded(this, size - added, size - 1);
+        if (openRowChanged) fireContentsChanged(this, oldSize - 1 - removed, oldSize - 1 - removed);
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    void clear() {
+        int oldSize = size;
+        Arrays.fill(rows, null);
+        head = 0;
+        size = 0;
+        lastRowOpen = false;
+        if (oldSize > 0) fireIntervalRemoved(this, 0, oldSize - 1);
+    }
+}
@@ -0,0 +1,128 @@
+package com.calculator.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExpressionParserTest {
+    private ExpressionParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new ExpressionParser();
+    }
+
+    @Test
+    public void multiArgumentBuiltins() {
+        assertEquals(2, parser.evaluate("min(3, 2)"), 0);
+        assertEquals(3, parser.evaluate("MAX(3,2)"), 0);
+        assertEquals(1024, parser.evaluate("pow(2,10)"), 0);
+        assertEquals(3, parser.evaluate("log(2, 8)"), 1e-12);
+        assertEquals(5, parser.evaluate("hypot(3,4)"), 0);
+    }
+
+    // 参数个数在编译时检查，包括空参数
+    @Test
+    public void wrongArityIsRejected() {
+        parser.defineFunction("sq(x) = x*x");
+        for (String expression : new String[]{"abs(1,)", "abs(,1)", "abs(1,2)", "abs()", "min(1)", "max(1,2,3)",
+                "log(8)", "sq(1,2)", "sq()"}) {
+            try {
+                parser.evaluate(expression);
+                fail(expression + " 应当因参数个数错误而失败");
+            } catch (IllegalArgumentException e) {
+                if (expression.equals("abs(1,)")) assertEquals("函数 abs 需要 1 个参数, 实际 2 个", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void userFunctionsAreInlined() {
+        parser.defineFunction("sq(x) = x*x");
+        parser.defineFunction("dist(a, b) = hypot(a, b) + sq(0)");
+        assertEquals(10, parser.evaluate("sq(3)+1"), 0);
+        assertEquals(5, parser.evaluate("dist(3,4)"), 0);
+
+        // 定义时已展开，删除被引用的函数不影响已有定义
+        assertTrue(parser.removeFunction("sq"));
+        assertEquals(5, parser.evaluate("dist(3,4)"), 0);
+        try {
+            parser.evaluate("sq(2)");
+            fail("删除后的函数不应再可用");
+        } catch (UnsupportedOperationException expected) {
+            // 预期
+        }
+
+        // 重新定义后的求值使用新定义
+        parser.defineFunction("dist(a, b) = a - b");
+        assertEquals(-1, parser.evaluate("dist(3,4)"), 0);
+    }
+
+    @Test
+    public void invalidDefinitionsAreRejected() {
+        try {
+            parser.defineFunction("sin(x) = x");
+            fail("不能重新定义内置函数");
+        } catch (IllegalArgumentException expected) {
+            // 预期
+        }
+        try {
+            parser.defineFunction("f(x) = y");
+            fail("函数体只能引用参数");
+        } catch (IllegalArgumentException expected) {
+            // 预期
+        }
+    }
+
+    // 未使用的实参仍然求值，其中的错误与文本展开前一致
+    @Test
+    public void unusedArgumentsStillThrow() {
+        parser.defineFunction("k(a) = 5");
+        assertEquals(5, parser.evaluate("k(2)"), 0);
+        assertThrowsArithmetic("k(1/0)");
+        assertThrowsArithmetic("k(sqrt(0-1)) + 1");
+        assertThrowsArithmetic("k(log(0, 2))");
+    }
+
+    // 解释执行、批量求值和生成字节码之后的结果与错误一致
+    @Test
+    public void executionTiersAgree() {
+        parser.defineFunction("k(a) = 5");
+        parser.defineFunction("sq(x) = x*x");
+        CompiledExpression compiled = parser.compile("k(1/x) + sq(x) + max(x, 2)", "x");
+        double[] xs = {1, 2.5, -3, 100};
+        double[] results = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) results[i] = compiled.evaluate(new double[]{xs[i]});
+        assertArrayEquals(new double[]{8, 13.75, 16, 10105}, results, 0);
+        assertArrayEquals(results, compiled.evaluateBatch(new double[][]{xs}), 0);
+        try {
+            compiled.evaluateBatch(new double[][]{{1, 0, 3}});
+            fail("批量求值应当报告未使用实参中的除零");
+        } catch (ArithmeticException expected) {
+            // 预期
+        }
+
+        for (int i = 0; i < 1_000_000 && !compiled.isBytecodeCompiled(); i++) compiled.evaluate(new double[]{2});
+        assertTrue(compiled.isBytecodeCompiled());
+        for (int i = 0; i < xs.length; i++) assertEquals(results[i], compiled.evaluate(new double[]{xs[i]}), 0);
+        try {
+            compiled.evaluate(new double[]{0});
+            fail("字节码应当报告未使用实参中的除零");
+        } catch (ArithmeticException expected) {
+            // 预期
+        }
+    }
+
+    private void assertThrowsArithmetic(String expression) {
+        try {
+            parser.evaluate(expression);
+            fail(expression + " 应当求值失败");
+        } catch (ArithmeticException expected) {
+            // 预期
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.calculator.model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistoryBinaryFormatTest {
+    // 版本 1 的段头魔数 "SEGM"
+    private static final int SEGMENT_MAGIC_V1 = 0x5345474D;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void resultsReadBackBitForBit() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("history.bin");
+        List<HistoryWriter.Entry> entries = Arrays.asList(
+                new HistoryWriter.Entry(1L, "0.1+0.2", 0.1 + 0.2, null),
+                new HistoryWriter.Entry(2L, "0-0", -0.0, null),
+                new HistoryWriter.Entry(3L, "1/3", 1.0 / 3, null),
+                new HistoryWriter.Entry(4L, "最小值", Double.MIN_VALUE, null),
+                new HistoryWriter.Entry(5L, "10^400", Double.POSITIVE_INFINITY, null),
+                new HistoryWriter.Entry(6L, "", Double.NaN, null));
+        try (HistoryJournal journal = new HistoryJournal(file, 1, 0)) {
+            for (HistoryWriter.Entry entry : entries) journal.append(entry);
+        }
+
+        assertEntries(entries, read(file));
+    }
+
+    // 在每个字节处截断都只读出完整记录组成的前缀，截得越短前缀越短
+    @Test
+    public void truncationAtEveryOffsetKeepsValidPrefix() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("history.bin");
+        List<HistoryWriter.Entry> entries = sample(40);
+        // 前一半整段写入，后一半逐条续写到预留的分段中
+        try (HistoryJournal journal = new HistoryJournal(file, 1, 0)) {
+            journal.rewrite(entries.subList(0, 20));
+            for (HistoryWriter.Entry entry : entries.subList(20, 40)) journal.append(entry);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        assertEntries(entries, read(file));
+
+        Path truncated = temp.getRoot().toPath().resolve("truncated.bin");
+        int previous = 0;
+        for (int length = HistoryBinaryFormat.FILE_HEADER_SIZE; length <= bytes.length; length++) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            List<HistoryWriter.Entry> prefix = read(truncated);
+            assertTrue("截断到 " + length + " 字节后记录变多", prefix.size() >= previous);
+            assertEntries(entries.subList(0, prefix.size()), prefix);
+            previous = prefix.size();
+        }
+        assertEquals(entries.size(), previous);
+    }
+
+    // 截断后重新打开追加：不完整的结尾被截掉，新记录紧接在有效前缀之后
+    @Test
+    public void appendAfterTruncationContinuesValidPrefix() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("history.bin");
+        List<HistoryWriter.Entry> entries = sample(12);
+        try (HistoryJournal journal = new HistoryJournal(file, 1, 0)) {
+            for (HistoryWriter.Entry entry : entries) journal.append(entry);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        HistoryWriter.Entry added = new HistoryWriter.Entry(99L, "追加", 99, null);
+
+        Path truncated = temp.getRoot().toPath().resolve("truncated.bin");
+        // 打开时截掉结尾会在标准错误中提示，这里不需要
+        PrintStream err = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            for (int length = HistoryBinaryFormat.FILE_HEADER_SIZE; length <= bytes.length; length += 7) {
+                Files.write(truncated, Arrays.copyOf(bytes, length));
+                List<HistoryWriter.Entry> expected = new ArrayList<>(read(truncated));
+                expected.add(added);
+                try (HistoryJournal journal = new HistoryJournal(truncated, 1, 0)) {
+                    journal.append(added);
+                }
+                assertEntries(expected, read(truncated));
+            }
+        } finally {
+            System.setErr(err);
+        }
+    }
+
+    @Test
+    public void readsAndUpgradesVersion1Files() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("history.bin");
+        List<HistoryWriter.Entry> entries = sample(10);
+        byte[] segment1 = version1Segment(entries.subList(0, 6));
+        byte[] segment2 = version1Segment(entries.subList(6, 10));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ByteBuffer.allocate(HistoryBinaryFormat.FILE_HEADER_SIZE)
+                .putInt(HistoryBinaryFormat.MAGIC).putInt(1).array());
+        out.write(segment1);
+        out.write(segment2);
+        byte[] bytes = out.toByteArray();
+
+        Files.write(file, bytes);
+        assertEntries(entries, read(file));
+
+        // 版本 1 的分段整段写入，不完整的最后一段整段作废
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertEntries(entries.subList(0, 6), read(file));
+
+        // 追加时升级为版本 2，原有记录保持不变
+        Files.write(file, bytes);
+        HistoryWriter.Entry added = new HistoryWriter.Entry(99L, "追加", 99, null);
+        try (HistoryJournal journal = new HistoryJournal(file, 1, 0)) {
+            journal.append(added);
+        }
+        assertEquals(HistoryBinaryFormat.VERSION, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(4));
+        List<HistoryWriter.Entry> expected = new ArrayList<>(entries);
+        expected.add(added);
+        assertEntries(expected, read(file));
+    }
+
+    private static List<HistoryWriter.Entry> sample(int count) {
+        List<HistoryWriter.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String expression = i % 3 == 0 ? "sqrt(" + i + ")" : i + "*π";
+            entries.add(new HistoryWriter.Entry(1_700_000_000_000L + i * 1000L, expression, i / 7.0, null));
+        }
+        return entries;
+    }
+
+    private static byte[] version1Segment(List<HistoryWriter.Entry> entries) {
+        List<byte[]> expressions = new ArrayList<>();
+        int poolSize = 0;
+        for (HistoryWriter.Entry entry : entries) {
+            byte[] expression = entry.expression().getBytes(StandardCharsets.UTF_8);
+            expressions.add(expression);
+            poolSize += expression.length;
+        }
+        ByteBuffer segment = ByteBuffer.allocate(12 + 24 * entries.size() + poolSize);
+        segment.putInt(SEGMENT_MAGIC_V1).putInt(entries.size()).putInt(poolSize);
+        int offset = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            HistoryWriter.Entry entry = entries.get(i);
+            segment.putLong(entry.timestamp()).putDouble(entry.result()).putInt(offset).putInt(expressions.get(i).length);
+            offset += expressions.get(i).length;
+        }
+        for (byte[] expression : expressions) segment.put(expression);
+        return segment.array();
+    }
+
+    private static List<HistoryWriter.Entry> read(Path file) throws IOException {
+        List<HistoryWriter.Entry> entries = new ArrayList<>();
+        HistoryBinaryFormat.readAll(file, (timestamp, expression, result) ->
+                entries.add(new HistoryWriter.Entry(timestamp, expression, result, null)));
+        return entries;
+    }
+
+    private static void assertEntries(List<HistoryWriter.Entry> expected, List<HistoryWriter.Entry> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).timestamp(), actual.get(i).timestamp());
+            assertEquals(expected.get(i).expression(), actual.get(i).expression());
+            assertEquals(Double.doubleToRawLongBits(expected.get(i).result()),
+                    Double.doubleToRawLongBits(actual.get(i).result()));
+        }
+    }
+}
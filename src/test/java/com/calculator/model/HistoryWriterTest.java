@@ -0,0 +1,103 @@
+package com.calculator.model;
+
+import com.calculator.metrics.Metrics;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HistoryWriterTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void closeWritesEveryEntrySubmittedBefore() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("history.txt");
+        HistoryWriter writer = new HistoryWriter(new HistoryJournal(file, 1000, 0), 8, Metrics.NOOP);
+        for (int i = 0; i < 1000; i++) {
+            writer.awaitCapacity();
+            writer.append(i, "1+" + i, 1 + i, null);
+        }
+        writer.close();
+
+        List<String> expressions = expressions(file);
+        assertEquals(1000, expressions.size());
+        for (int i = 0; i < 1000; i++) assertEquals("1+" + i, expressions.get(i));
+        assertEquals(0, writer.getPending());
+    }
+
+    // 与 close 并发的提交要么被拒绝，要么被写入：关闭后没有滞留的记录，每个线程写入的是连续的前缀
+    @Test
+    public void closeDrainsWritesRacingWithIt() throws Exception {
+        int threads = 4;
+        for (int trial = 0; trial < 200; trial++) {
+            Path file = temp.getRoot().toPath().resolve("history-" + trial + ".txt");
+            HistoryWriter writer = new HistoryWriter(new HistoryJournal(file, 1000, 0), 8, Metrics.NOOP);
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int id = t;
+                Thread producer = new Thread(() -> {
+                    for (int i = 0; !stop.get(); i++) {
+                        writer.awaitCapacity();
+                        writer.append(i, id + ":" + i, i, null);
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            Thread.sleep(trial % 5);
+            writer.close();
+            stop.set(true);
+            for (Thread producer : producers) producer.join();
+
+            assertEquals("第 " + trial + " 次关闭后仍有未写入的记录", 0, writer.getPending());
+            int[] next = new int[threads];
+            for (String expression : expressions(file)) {
+                String[] parts = expression.split(":");
+                int id = Integer.parseInt(parts[0]);
+                assertEquals(expression, next[id]++, Integer.parseInt(parts[1]));
+            }
+        }
+    }
+
+    @Test
+    public void operationsAfterCloseAreRejected() throws IOException {
+        Path file = temp.getRoot().toPath().resolve("history.txt");
+        HistoryWriter writer = new HistoryWriter(new HistoryJournal(file, 1, 0), 8, Metrics.NOOP);
+        writer.append(1, "1+1", 2, null);
+        writer.close();
+
+        writer.append(2, "2+2", 4, null);
+        writer.flush();
+        writer.awaitCapacity();
+        assertEquals(0, writer.getPending());
+        try {
+            writer.rewrite(new ArrayList<>()).await();
+            fail("关闭后的重写应当失败");
+        } catch (IOException expected) {
+            // 原文件保持不变
+        }
+        assertEquals(1, expressions(file).size());
+    }
+
+    private static List<String> expressions(Path file) throws IOException {
+        List<String> expressions = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!HistoryFormat.parseLine(line, (timestamp, expression, result) -> expressions.add(expression))) {
+                fail("无法解析的行: " + line);
+            }
+        }
+        return expressions;
+    }
+}